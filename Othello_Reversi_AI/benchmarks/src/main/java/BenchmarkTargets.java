@@ -0,0 +1,100 @@
+import java.util.function.LongSupplier;
+
+/*The code the benchmarks measure. JMH does not allow benchmarks in the default package,
+and the engine's classes are only visible from the default package, so the benchmarks in
+the bench package get these LongSuppliers once, through reflection, and then only call getAsLong.
+Every supplier returns something computed from its work, so that the JIT cannot throw the work away.*/
+
+public class BenchmarkTargets {
+
+    //Positions recorded from engine games, from the opening to the late midgame, with the player to move.
+    static final String[] POSITIONS = {
+            "---------------------------OX------XO---------------------------",
+            "---------------------------OX----OOOOX-----O-X----O-XX----------",
+            "------------------OX------XXX--O-OOXOXO---OO-O----OOOOO---------",
+            "------------O-----OO---X--OXOOXO-OXXOOO--XXXXOO---XXOOO----X----",
+            "---O------OOO----OXO-XXX-OOOXXOO-OOOXXO--XXOOXO---XXOOX----X---X",
+            "---OOO---OOXO---XOOO-XXXXOXOXXOOOOOXXXO--OOOXXO---OOOXX---OX--XX",
+            "---OOO--OOOXOX--OOOOOXXXOOXOOXXXOOOXOXXX-OOOOXX---OOOXX---OX--XX"
+    };
+    static final char[] TO_MOVE = {'X', 'X', 'X', 'X', 'X', 'X', 'X'};
+
+    public static int positionCount() {
+        return POSITIONS.length;
+    }
+
+    private static char opponent(char tileColor) {
+        return tileColor == 'X' ? 'O' : 'X';
+    }
+
+    //State.moveGenerator on the position. Returns the move mask.
+
+    public static LongSupplier moveGenerator(int position) {
+        State state = new State(POSITIONS[position]);
+        char tileColor = TO_MOVE[position];
+        return () -> {
+            state.moveGenerator(state, tileColor);
+            return state.validMoves;
+        };
+    }
+
+    //State.flipTiles for every valid move of the position, each one on a fresh copy of the board.
+
+    public static LongSupplier flipTiles(int position) {
+        State original = new State(POSITIONS[position]);
+        char tileColor = TO_MOVE[position];
+        original.moveGenerator(original, tileColor);
+        long validMoves = original.validMoves;
+        State state = new State(original);
+        return () -> {
+            long sum = 0;
+            for (long moves = validMoves; moves != 0; moves &= moves - 1) {
+                int move = Long.numberOfTrailingZeros(moves);
+                state.xTiles = original.xTiles;
+                state.oTiles = original.oTiles;
+                state.setTile(move / State.dimension, move % State.dimension, tileColor);
+                state.flipTiles(move / State.dimension, move % State.dimension, tileColor, opponent(tileColor));
+                sum += state.xTiles;
+            }
+            return sum;
+        };
+    }
+
+    //State.getChildren of the position. Returns the number of children.
+
+    public static LongSupplier getChildren(int position) {
+        State state = new State(POSITIONS[position]);
+        char tileColor = TO_MOVE[position];
+        state.moveGenerator(state, tileColor);
+        return () -> state.getChildren(tileColor, opponent(tileColor)).size();
+    }
+
+    //Heuristic.evaluate of the position, from the side of the player to move.
+
+    public static LongSupplier evaluate(int position) {
+        State state = new State(POSITIONS[position]);
+        char tileColor = TO_MOVE[position];
+        Heuristic heuristic = new Heuristic();
+        return () -> heuristic.evaluate(state, tileColor, opponent(tileColor));
+    }
+
+    /*Gaming.MiniMax on the position to the given depth, starting every time from an empty transposition table
+    and without the endgame solver, so that every call does the same search. Returns the nodes it visited.
+    The table is smaller than the default one, so that clearing it does not take a big part of the time.*/
+
+    public static LongSupplier miniMax(int position, int depth) {
+        State original = new State(POSITIONS[position]);
+        char tileColor = TO_MOVE[position];
+        TranspositionTable table = new TranspositionTable(18);
+        Gaming gaming = new Gaming(depth, tileColor, table);
+        gaming.setEndgameEmpties(0);
+        return () -> {
+            table.clear();
+            State state = new State(original);
+            state.moveGenerator(state, tileColor);
+            long before = gaming.getNodeCount();
+            gaming.MiniMax(state);
+            return gaming.getNodeCount() - before;
+        };
+    }
+}
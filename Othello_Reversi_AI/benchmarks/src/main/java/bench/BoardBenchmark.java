@@ -0,0 +1,65 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*The board operations, in ns/op, on every recorded position:
+State.moveGenerator, State.flipTiles (for all the moves of the position), State.getChildren and Heuristic.evaluate.*/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    //The index of the position in BenchmarkTargets.POSITIONS
+    @Param({"0", "1", "2", "3", "4", "5", "6"})
+    public int position;
+
+    private LongSupplier moveGenerator;
+    private LongSupplier flipTiles;
+    private LongSupplier getChildren;
+    private LongSupplier evaluate;
+
+    @Setup
+    public void setUp() {
+        moveGenerator = Targets.get("moveGenerator", position);
+        flipTiles = Targets.get("flipTiles", position);
+        getChildren = Targets.get("getChildren", position);
+        evaluate = Targets.get("evaluate", position);
+    }
+
+    @Benchmark
+    public long moveGenerator() {
+        return moveGenerator.getAsLong();
+    }
+
+    @Benchmark
+    public long flipTiles() {
+        return flipTiles.getAsLong();
+    }
+
+    @Benchmark
+    public long getChildren() {
+        return getChildren.getAsLong();
+    }
+
+    @Benchmark
+    public long evaluate() {
+        return evaluate.getAsLong();
+    }
+}
@@ -0,0 +1,63 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*A whole Gaming.MiniMax search at depths 4, 6 and 8 on every recorded position.
+The throughput mode reports the searches per second and, through the nodes counter, the nodes per second.
+The average time mode reports the time of one search.*/
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+    @Param({"0", "1", "2", "3", "4", "5", "6"})
+    public int position;
+
+    @Param({"4", "6", "8"})
+    public int depth;
+
+    private LongSupplier miniMax;
+
+    //The nodes visited, reported by JMH next to the primary result
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        miniMax = Targets.get("miniMax", new Class<?>[]{int.class, int.class}, position, depth);
+    }
+
+    @Benchmark
+    public long miniMax(Nodes counter) {
+        long nodes = miniMax.getAsLong();
+        counter.nodes += nodes;
+        return nodes;
+    }
+}
@@ -0,0 +1,24 @@
+package bench;
+
+import java.util.function.LongSupplier;
+
+/*Gets the LongSuppliers of the default package BenchmarkTargets class through reflection.
+This is done once per trial, so the benchmarks themselves only pay for an interface call the JIT inlines.*/
+
+final class Targets {
+
+    private Targets() {
+    }
+
+    static LongSupplier get(String name, Class<?>[] types, Object... arguments) {
+        try {
+            return (LongSupplier) Class.forName("BenchmarkTargets").getMethod(name, types).invoke(null, arguments);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the benchmark target " + name, e);
+        }
+    }
+
+    static LongSupplier get(String name, int position) {
+        return get(name, new Class<?>[]{int.class}, position);
+    }
+}
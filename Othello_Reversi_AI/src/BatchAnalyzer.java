@@ -0,0 +1,211 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*Analyses a file of positions without a human: every position is searched by a cpu player and its best move,
+score and principal variation are written out, one line for every line read, in the same order.
+The positions are shared between a pool of threads, every thread with its own two Gaming objects and tables,
+so the threads share nothing but the settings and the evaluator and more threads analyse more positions a second.
+Only a few positions per thread are read ahead of the ones written, so a file of any size is analysed
+without holding it in memory.
+
+Every line of the input is a position and the player to move, in one of two forms:
+<board> <X|O>                 a board string (see State), 64 cells
+<x tiles> <o tiles> <X|O>     the bitboards of the X and the O tiles in hexadecimal, bit 0 being A1
+Empty lines and lines starting with # are left out. Every output line is the input line followed by
+bestmove <move> score S depth D nodes N pv <moves>, the way EngineServer answers a go,
+where the move is pass or none if the player cannot move.
+
+Usage: java BatchAnalyzer <input file> <output file> [name=value ...]
+A file name of - stands for the standard input or output.
+threads=N      the number of positions analysed at the same time, one per core unless given
+depth=8        the depth every position is searched to
+time=0         the milliseconds a position may take, 0 for no limit
+endgame=14     the number of empty cells the endgame solver takes over at, 0 to search every position
+weights=       a PatternTrainer weights file to evaluate with instead of the Heuristic
+probCut=       a ProbCutCalibrator file to prune with*/
+
+public class BatchAnalyzer {
+
+    //Every Gaming object gets a table of 2^TABLE_BITS entries, smaller than the default
+    //since there are two of them on every thread
+    static final int TABLE_BITS = 18;
+    //How many positions per thread may be read and not written yet
+    static final int READ_AHEAD = 4;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int depth = 8;
+    private long time;
+    private int endgameEmpties = Gaming.DEFAULT_ENDGAME_EMPTIES;
+    private Evaluator evaluator = new Heuristic();
+    private ProbCut probCut;
+
+    //The X and the O player of every thread, made the first time the thread analyses a position
+    private final ThreadLocal<Gaming[]> players = ThreadLocal.withInitial(() -> new Gaming[]{create('X'), create('O')});
+    //The positions analysed and the nodes searched so far
+    private final AtomicLong positions = new AtomicLong();
+    private final AtomicLong nodes = new AtomicLong();
+
+    //Reads the name=value settings of the command line.
+
+    void configure(String[] settings) throws IOException {
+        for (String setting : settings) {
+            int split = setting.indexOf('=');
+            if (split < 0) throw new IllegalArgumentException("Settings are written as name=value, not " + setting);
+            String name = setting.substring(0, split);
+            String value = setting.substring(split + 1);
+            switch (name) {
+                case "threads": threads = Integer.parseInt(value); break;
+                case "depth": depth = Integer.parseInt(value); break;
+                case "time": time = Long.parseLong(value); break;
+                case "endgame": endgameEmpties = Integer.parseInt(value); break;
+                case "weights": evaluator = new PatternEvaluator(Paths.get(value)); break;
+                case "probCut": probCut = new ProbCut(Paths.get(value)); break;
+                default: throw new IllegalArgumentException("Unknown setting " + name);
+            }
+        }
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+    }
+
+    private Gaming create(char tileColor) {
+        Gaming gaming = new Gaming(depth, tileColor, new TranspositionTable(TABLE_BITS));
+        gaming.setTimeBudget(time);
+        gaming.setEvaluator(evaluator);
+        gaming.setEndgameEmpties(endgameEmpties);
+        gaming.setProbCut(probCut);
+        return gaming;
+    }
+
+    /*Reads the positions of in, analyses them on the pool and writes their lines to out in the order they were read.
+    A line that is not a position stops the analysis with an IOException naming it.*/
+
+    public void run(BufferedReader in, Writer out) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        //the positions read and not written yet, oldest first
+        ArrayDeque<Future<String>> waiting = new ArrayDeque<Future<String>>();
+        try {
+            int lineNumber = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] words = line.split("\\s+");
+                State board;
+                char tileColor;
+                try {
+                    board = parse(words);
+                    tileColor = color(words[words.length - 1]);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("line " + lineNumber + ": " + e.getMessage());
+                }
+                String position = line;
+                waiting.add(pool.submit(() -> position + " " + analyse(board, tileColor)));
+                if (waiting.size() >= threads * READ_AHEAD) {
+                    write(waiting.remove(), out);
+                }
+            }
+            while (!waiting.isEmpty()) {
+                write(waiting.remove(), out);
+            }
+            out.flush();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //Waits for the analysis of a position and writes its line.
+
+    private static void write(Future<String> analysis, Writer out) throws IOException, InterruptedException {
+        try {
+            out.write(analysis.get());
+            out.write(System.lineSeparator());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The analysis of a position failed", e.getCause());
+        }
+    }
+
+    //Returns the board of a line split into words, the last word being the player to move.
+
+    static State parse(String[] words) {
+        if (words.length == 2) {
+            return new State(words[0]);
+        }
+        if (words.length == 3) {
+            long xTiles = Long.parseUnsignedLong(hexDigits(words[0]), 16);
+            long oTiles = Long.parseUnsignedLong(hexDigits(words[1]), 16);
+            if ((xTiles & oTiles) != 0) throw new IllegalArgumentException("X and O tiles on the same cells");
+            return new State(xTiles, oTiles);
+        }
+        throw new IllegalArgumentException("A position is a board string or two hexadecimal numbers, and X or O");
+    }
+
+    private static String hexDigits(String word) {
+        return (word.startsWith("0x") || word.startsWith("0X")) ? word.substring(2) : word;
+    }
+
+    private static char color(String word) {
+        if (word.equalsIgnoreCase("X")) return 'X';
+        if (word.equalsIgnoreCase("O")) return 'O';
+        throw new IllegalArgumentException("The player to move is X or O, not " + word);
+    }
+
+    //Searches board for tileColor with the players of the calling thread and returns the bestmove part of its line.
+
+    private String analyse(State board, char tileColor) {
+        char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+        positions.incrementAndGet();
+        if (Bitboard.moves(board.getTiles(tileColor), board.getTiles(opponentTileColor)) == 0) {
+            boolean over = Bitboard.moves(board.getTiles(opponentTileColor), board.getTiles(tileColor)) == 0;
+            return over ? "bestmove none" : "bestmove pass";
+        }
+        SearchResult result = players.get()[tileColor == 'X' ? 0 : 1].findBestMove(board);
+        nodes.addAndGet(result.getNodes());
+        return "bestmove " + State.squareName(result.getBestMove()).toLowerCase() + " score " + result.getScore()
+                + " depth " + result.getDepth() + " nodes " + result.getNodes()
+                + " pv " + result.principalVariationString().toLowerCase();
+    }
+
+    public long getPositions() {
+        return positions.get();
+    }
+
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: java BatchAnalyzer <input file> <output file> [threads=N] [depth=8] [time=0] "
+                    + "[endgame=14] [weights=file] [probCut=file]");
+            return;
+        }
+        BatchAnalyzer analyzer = new BatchAnalyzer();
+        String[] settings = new String[args.length - 2];
+        System.arraycopy(args, 2, settings, 0, settings.length);
+        analyzer.configure(settings);
+        //with the results on the standard output the summary goes to the standard error, so that it stays out of them
+        PrintStream log = args[1].equals("-") ? System.err : System.out;
+        long start = System.nanoTime();
+        try (BufferedReader in = args[0].equals("-") ? new BufferedReader(new InputStreamReader(System.in))
+                : Files.newBufferedReader(Paths.get(args[0]));
+             Writer out = args[1].equals("-") ? new BufferedWriter(new OutputStreamWriter(System.out))
+                     : Files.newBufferedWriter(Paths.get(args[1]))) {
+            analyzer.run(in, out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.printf("%d positions, %d nodes in %.1f s: %.1f positions and %d nodes a second%n", analyzer.getPositions(),
+                analyzer.getNodes(), seconds, analyzer.getPositions() / seconds, (long) (analyzer.getNodes() / seconds));
+    }
+}
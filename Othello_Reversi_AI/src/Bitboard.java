@@ -0,0 +1,99 @@
+/*Static helpers working directly on the bitboards of a State.
+A bitboard is a long where bit i*8 + j stands for the cell in row i and column j.
+Moving one cell to the right is a shift by 1, one row down is a shift by 8
+and the two diagonals are shifts by 7 and 9, so all 8 directions are covered by
+shifting left or right by 1, 7, 8 and 9.*/
+
+public class Bitboard {
+
+    //Every column except the first and the last one. Horizontal and diagonal runs are
+    //masked with it so that a shift can never wrap a tile around to the other side of the board.
+    static final long INNER_COLUMNS = 0x7E7E7E7E7E7E7E7EL;
+    //The first column (A) and the last one (H)
+    static final long COLUMN_A = 0x0101010101010101L;
+    static final long COLUMN_H = 0x8080808080808080L;
+
+    private Bitboard() {
+    }
+
+    /*Returns all the valid moves of player as a single mask.
+    For every direction the opponent tiles next to the player's tiles are flooded with a
+    Kogge-Stone style fill, so every direction costs the same fixed number of shifts and ANDs
+    and every move appears once, no matter how many directions it flips in.*/
+
+    public static long moves(long player, long opponent) {
+        long empty = ~(player | opponent);
+        long inner = opponent & INNER_COLUMNS;
+        return (movesLeft(player, inner, 1) | movesRight(player, inner, 1)
+                | movesLeft(player, opponent, 8) | movesRight(player, opponent, 8)
+                | movesLeft(player, inner, 7) | movesRight(player, inner, 7)
+                | movesLeft(player, inner, 9) | movesRight(player, inner, 9))
+                & empty;
+    }
+
+    //The cells just after a run of opponent tiles, starting next to a player's tile and going towards higher bits.
+    //The run can be up to 6 tiles long, which is the longest one an 8x8 board allows.
+
+    private static long movesLeft(long player, long opponent, int shift) {
+        long flood = opponent & (player << shift);
+        flood |= opponent & (flood << shift);
+        long pre = opponent & (opponent << shift);
+        flood |= pre & (flood << (2 * shift));
+        flood |= pre & (flood << (2 * shift));
+        return flood << shift;
+    }
+
+    //Same as movesLeft, going towards lower bits.
+
+    private static long movesRight(long player, long opponent, int shift) {
+        long flood = opponent & (player >>> shift);
+        flood |= opponent & (flood >>> shift);
+        long pre = opponent & (opponent >>> shift);
+        flood |= pre & (flood >>> (2 * shift));
+        flood |= pre & (flood >>> (2 * shift));
+        return flood >>> shift;
+    }
+
+    /*Returns the mask of the opponent tiles that get flipped when player plays on square.
+    square is the number of the bit, i*8 + j. Each direction is flooded the same way as in moves
+    and kept only if the run of opponent tiles is closed by one of the player's tiles.*/
+
+    public static long flips(int square, long player, long opponent) {
+        long move = 1L << square;
+        long inner = opponent & INNER_COLUMNS;
+        return flipsLeft(move, player, inner, 1) | flipsRight(move, player, inner, 1)
+                | flipsLeft(move, player, opponent, 8) | flipsRight(move, player, opponent, 8)
+                | flipsLeft(move, player, inner, 7) | flipsRight(move, player, inner, 7)
+                | flipsLeft(move, player, inner, 9) | flipsRight(move, player, inner, 9);
+    }
+
+    private static long flipsLeft(long move, long player, long opponent, int shift) {
+        long flood = opponent & (move << shift);
+        flood |= opponent & (flood << shift);
+        long pre = opponent & (opponent << shift);
+        flood |= pre & (flood << (2 * shift));
+        flood |= pre & (flood << (2 * shift));
+        return ((flood << shift) & player) != 0 ? flood : 0;
+    }
+
+    private static long flipsRight(long move, long player, long opponent, int shift) {
+        long flood = opponent & (move >>> shift);
+        flood |= opponent & (flood >>> shift);
+        long pre = opponent & (opponent >>> shift);
+        flood |= pre & (flood >>> (2 * shift));
+        flood |= pre & (flood >>> (2 * shift));
+        return ((flood >>> shift) & player) != 0 ? flood : 0;
+    }
+
+    //Returns every cell next to one of the tiles, in any of the 8 directions. The tiles themselves are only in it
+    //if they are next to another one of them.
+
+    public static long neighbours(long tiles) {
+        long notA = tiles & ~COLUMN_A;
+        long notH = tiles & ~COLUMN_H;
+        return (tiles << 8) | (tiles >>> 8)
+                | (notH << 1) | (notA >>> 1)
+                | (notH << 9) | (notA << 7)
+                | (notH >>> 7) | (notA >>> 9);
+    }
+}
@@ -0,0 +1,315 @@
+/*Solves the end of the game exactly. Instead of stopping at a depth and guessing with the Heuristic,
+it plays every line to the end and returns the final disc difference, so it is only used
+when few empty cells are left. It works on two bitboards, the player to move and his opponent,
+and every score is from the side of the player to move (negamax), positive when he wins.
+To go fast it uses:
+- fastest-first ordering while many cells are empty: the moves leaving the opponent the fewest replies first,
+- parity ordering near the end: moves in the quadrants with an odd number of empty cells first,
+- special routines for the last 3, 2 and 1 empty cells, which try the empty cells directly instead of generating moves,
+- a transposition table while many cells are empty, so positions reached through other move orders are solved once,
+- principal variation search: after the first move, the others are only proven worse with a null window,
+- a win/loss/draw only mode, searching with the window (-1, 1), which is much faster than the exact score.
+One EndgameSolver is used by one thread at a time.*/
+
+public class EndgameSolver {
+
+    //With more empty cells than this the moves are sorted by the opponent's mobility, else by parity
+    static final int FASTEST_FIRST_EMPTIES = 7;
+    //With at least this many empty cells the positions are stored in the transposition table
+    static final int TABLE_EMPTIES = 8;
+    //The size of the transposition table, 2^18 entries (4 MB)
+    static final int TABLE_BITS = 18;
+
+    //The four quadrants of the board, used for parity
+    private static final long[] QUADRANTS = {
+            0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+
+    //The move lists and sort keys, one per number of empty cells, allocated once
+    private final int[][] moveLists = new int[65][64];
+    private final int[][] keys = new int[65][64];
+
+    //Remembers the positions solved. The scores are from the side of the player to move,
+    //so the key is a hash of the player's and the opponent's bitboards, in that order.
+    private final TranspositionTable table = new TranspositionTable(TABLE_BITS);
+    //Counts the positions visited
+    private long nodeCount;
+    //The score of the last solveRoot call
+    private int score;
+
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    //Returns the score of the last solveRoot call, from the side of the player who was to move.
+    //In win/loss/draw mode it is only 1, 0 or -1 (or any positive or negative number for a win or a loss).
+
+    public int getScore() {
+        return score;
+    }
+
+    /*Finds the best move of player. It returns the move and leaves its score in getScore.
+    player must have at least one valid move.
+    If winLossOnly is true, it only finds out if the move wins, loses or draws, not by how many discs.*/
+
+    public int solveRoot(long player, long opponent, boolean winLossOnly) {
+        int alpha = winLossOnly ? -1 : -64;
+        int beta = winLossOnly ? 1 : 64;
+        int empties = Long.bitCount(~(player | opponent));
+        long moves = Bitboard.moves(player, opponent);
+        table.newSearch();
+        int count = order(player, opponent, moves, empties, -1);
+        int[] list = moveLists[empties];
+        int bestMove = list[0];
+        int bestScore = -65;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            long flipped = Bitboard.flips(move, player, opponent);
+            long nextPlayer = opponent & ~flipped;
+            long nextOpponent = player | flipped | (1L << move);
+            int moveScore;
+            //the first move gets the whole window, the others are only checked to be worse with a null window,
+            //and searched again with the whole window when they are not
+            if (i == 0) {
+                moveScore = -solve(nextPlayer, nextOpponent, -beta, -alpha, false);
+            } else {
+                moveScore = -solve(nextPlayer, nextOpponent, -alpha - 1, -alpha, false);
+                if (moveScore > alpha && moveScore < beta) {
+                    moveScore = -solve(nextPlayer, nextOpponent, -beta, -moveScore, false);
+                }
+            }
+            if (moveScore > bestScore) {
+                bestScore = moveScore;
+                bestMove = move;
+                if (bestScore >= beta) break;
+                alpha = Math.max(alpha, bestScore);
+            }
+        }
+        score = bestScore;
+        return bestMove;
+    }
+
+    //Returns the exact final disc difference of the position for the player to move, searching with the window (alpha, beta).
+
+    public int solve(long player, long opponent, int alpha, int beta, boolean passed) {
+        long empty = ~(player | opponent);
+        int empties = Long.bitCount(empty);
+        if (empties == 3) {
+            int square1 = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            int square2 = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            int square3 = Long.numberOfTrailingZeros(empty);
+            //parity: the cell alone in its quadrant goes first
+            if (sameQuadrant(square1, square3)) {
+                return solveLast3(player, opponent, alpha, beta, square2, square1, square3, false);
+            }
+            if (sameQuadrant(square2, square3)) {
+                return solveLast3(player, opponent, alpha, beta, square1, square2, square3, false);
+            }
+            return solveLast3(player, opponent, alpha, beta, square3, square1, square2, false);
+        }
+        if (empties == 2) {
+            int square1 = Long.numberOfTrailingZeros(empty);
+            int square2 = 63 - Long.numberOfLeadingZeros(empty);
+            return solveLast2(player, opponent, alpha, beta, square1, square2, false);
+        }
+        if (empties == 1) {
+            return solveLast1(player, opponent, Long.numberOfTrailingZeros(empty));
+        }
+        if (empties == 0) {
+            return finalDifference(player, opponent);
+        }
+        nodeCount++;
+        long moves = Bitboard.moves(player, opponent);
+        if (moves == 0) {
+            if (passed) return finalDifference(player, opponent);
+            return -solve(opponent, player, -beta, -alpha, true);
+        }
+        long hash = 0;
+        int tableMove = -1;
+        int alphaStart = alpha;
+        if (empties >= TABLE_EMPTIES) {
+            hash = hash(player, opponent);
+            long entry = table.probe(hash);
+            if (entry != 0) {
+                tableMove = TranspositionTable.move(entry);
+                int tableScore = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && tableScore >= beta)
+                        || (bound == TranspositionTable.UPPER && tableScore <= alpha)) {
+                    return tableScore;
+                }
+            }
+        }
+        int count = order(player, opponent, moves, empties, tableMove);
+        int[] list = moveLists[empties];
+        int bestScore = -65;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            long flipped = Bitboard.flips(move, player, opponent);
+            long nextPlayer = opponent & ~flipped;
+            long nextOpponent = player | flipped | (1L << move);
+            int moveScore;
+            //the first move gets the whole window, the others are only checked to be worse with a null window,
+            //and searched again with the whole window when they are not
+            if (i == 0) {
+                moveScore = -solve(nextPlayer, nextOpponent, -beta, -alpha, false);
+            } else {
+                moveScore = -solve(nextPlayer, nextOpponent, -alpha - 1, -alpha, false);
+                if (moveScore > alpha && moveScore < beta) {
+                    moveScore = -solve(nextPlayer, nextOpponent, -beta, -moveScore, false);
+                }
+            }
+            if (moveScore > bestScore) {
+                bestScore = moveScore;
+                bestMove = move;
+                if (bestScore >= beta) break;
+                alpha = Math.max(alpha, bestScore);
+            }
+        }
+        if (empties >= TABLE_EMPTIES) {
+            int bound = (bestScore >= beta) ? TranspositionTable.LOWER
+                    : (bestScore <= alphaStart) ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+            table.store(hash, empties, bound, bestScore, bestMove);
+        }
+        return bestScore;
+    }
+
+    //A cheap hash of the two bitboards, good enough for the table, which checks the whole 64 bits of the key.
+
+    private static long hash(long player, long opponent) {
+        long hash = player * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(opponent * 0xC2B2AE3D27D4EB4FL, 32);
+        return hash ^ (hash >>> 29);
+    }
+
+    /*Puts the moves in the move list for the number of empty cells, best first, and returns how many there are.
+    With many empty cells the moves leaving the opponent the fewest replies go first (fastest-first),
+    with few empty cells the moves in quadrants with an odd number of empty cells go first (parity).
+    tableMove, the best move stored in the table, goes before all of them. It is -1 if there is none.*/
+
+    private int order(long player, long opponent, long moves, int empties, int tableMove) {
+        int[] list = moveLists[empties];
+        int[] moveKeys = keys[empties];
+        long empty = ~(player | opponent);
+        int count = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            int key = oddQuadrant(move, empty) ? 1 : 0;
+            if (empties > FASTEST_FIRST_EMPTIES) {
+                long flipped = Bitboard.flips(move, player, opponent);
+                int replies = Long.bitCount(Bitboard.moves(opponent & ~flipped, player | flipped | (1L << move)));
+                key += -replies * 4 + (MoveOrdering.SQUARE_VALUES[move] > 50 ? 8 : 0);
+            }
+            if (move == tableMove) key = Integer.MAX_VALUE;
+            int i = count++;
+            while (i > 0 && moveKeys[i - 1] < key) {
+                list[i] = list[i - 1];
+                moveKeys[i] = moveKeys[i - 1];
+                i--;
+            }
+            list[i] = move;
+            moveKeys[i] = key;
+        }
+        return count;
+    }
+
+    private static boolean oddQuadrant(int square, long empty) {
+        for (long quadrant : QUADRANTS) {
+            if ((quadrant & (1L << square)) != 0) {
+                return (Long.bitCount(quadrant & empty) & 1) != 0;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sameQuadrant(int square1, int square2) {
+        return ((square1 >> 2) & 1) == ((square2 >> 2) & 1) && (square1 >> 5) == (square2 >> 5);
+    }
+
+    //Three empty cells left: try each of them, square1 first.
+
+    private int solveLast3(long player, long opponent, int alpha, int beta, int square1, int square2, int square3, boolean passed) {
+        nodeCount++;
+        int bestScore = -65;
+        long flipped = Bitboard.flips(square1, player, opponent);
+        if (flipped != 0) {
+            bestScore = -solveLast2(opponent & ~flipped, player | flipped | (1L << square1), -beta, -alpha, square2, square3, false);
+            if (bestScore >= beta) return bestScore;
+            alpha = Math.max(alpha, bestScore);
+        }
+        flipped = Bitboard.flips(square2, player, opponent);
+        if (flipped != 0) {
+            int moveScore = -solveLast2(opponent & ~flipped, player | flipped | (1L << square2), -beta, -alpha, square1, square3, false);
+            if (moveScore > bestScore) {
+                bestScore = moveScore;
+                if (bestScore >= beta) return bestScore;
+                alpha = Math.max(alpha, bestScore);
+            }
+        }
+        flipped = Bitboard.flips(square3, player, opponent);
+        if (flipped != 0) {
+            int moveScore = -solveLast2(opponent & ~flipped, player | flipped | (1L << square3), -beta, -alpha, square1, square2, false);
+            if (moveScore > bestScore) {
+                bestScore = moveScore;
+            }
+        }
+        if (bestScore == -65) {
+            if (passed) return finalDifference(player, opponent);
+            return -solveLast3(opponent, player, -beta, -alpha, square1, square2, square3, true);
+        }
+        return bestScore;
+    }
+
+    //Two empty cells left.
+
+    private int solveLast2(long player, long opponent, int alpha, int beta, int square1, int square2, boolean passed) {
+        nodeCount++;
+        int bestScore = -65;
+        long flipped = Bitboard.flips(square1, player, opponent);
+        if (flipped != 0) {
+            bestScore = -solveLast1(opponent & ~flipped, player | flipped | (1L << square1), square2);
+            if (bestScore >= beta) return bestScore;
+        }
+        flipped = Bitboard.flips(square2, player, opponent);
+        if (flipped != 0) {
+            int moveScore = -solveLast1(opponent & ~flipped, player | flipped | (1L << square2), square1);
+            if (moveScore > bestScore) {
+                bestScore = moveScore;
+            }
+        }
+        if (bestScore == -65) {
+            if (passed) return finalDifference(player, opponent);
+            return -solveLast2(opponent, player, -beta, -alpha, square1, square2, true);
+        }
+        return bestScore;
+    }
+
+    //The last empty cell: the player plays it if he can, else the opponent does, else the game ends with it empty.
+
+    private int solveLast1(long player, long opponent, int square) {
+        nodeCount++;
+        long flipped = Bitboard.flips(square, player, opponent);
+        if (flipped != 0) {
+            return Long.bitCount(player) - Long.bitCount(opponent) + 2 * Long.bitCount(flipped) + 1;
+        }
+        flipped = Bitboard.flips(square, opponent, player);
+        if (flipped != 0) {
+            return Long.bitCount(player) - Long.bitCount(opponent) - 2 * Long.bitCount(flipped) - 1;
+        }
+        return finalDifference(player, opponent);
+    }
+
+    /*The disc difference of a finished game from the side of player.
+    Like in Main, the empty cells count for the winner, so the total is always 64.*/
+
+    public static int finalDifference(long player, long opponent) {
+        int playerTiles = Long.bitCount(player);
+        int opponentTiles = Long.bitCount(opponent);
+        int empties = 64 - playerTiles - opponentTiles;
+        if (playerTiles > opponentTiles) return playerTiles - opponentTiles + empties;
+        if (playerTiles < opponentTiles) return playerTiles - opponentTiles - empties;
+        return 0;
+    }
+}
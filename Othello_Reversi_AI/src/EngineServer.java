@@ -0,0 +1,417 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.management.JMException;
+
+/*A long running engine that plays any number of games at once, so that the JIT warm up and the table allocation
+happen once instead of once per game. Every game is a session: the console (stdin and stdout) is one,
+and with a port every connection to it on this machine is another. A session sends one command per line
+and gets its answers on their own lines. Its searches run on a thread pool shared by all the sessions,
+and all the sessions share two transposition tables, one for each color the engine searches for,
+since the scores in a table are from the side of the player searching. The other big tables, the endgame solver's
+and the move ordering's, belong to the pool threads, and every search borrows the ones of the thread it runs on.
+
+Commands:
+position startpos [moves d3 c5 ...]       the initial position, X to move, with the given moves played
+position <board> <X|O> [moves d3 c5 ...]  a board string (see State) with the given player to move
+go [depth N] [time MS]                    searches the position for the player to move in the background.
+                                          Sends an info line after every iteration and then
+                                          bestmove <move> score S depth D nodes N time MS pv <moves>,
+                                          where the move is pass or none if the player cannot move,
+                                          and pv the line expected from the position, -- for a pass.
+                                          A search that fails answers error search failed instead
+stop                                      ends the running search early, its bestmove is sent at once
+bestmove                                  sends the last bestmove line again
+isready                                   answers readyok
+quit                                      ends the session. On the console it ends the server too
+
+Usage: java EngineServer [name=value ...]
+port=0        also accept sessions on this local TCP port, 0 for the console only
+threads=N     the searches running at the same time, by default the number of processors
+tableBits=20  each of the two tables has 2^tableBits entries
+depth=8       the depth a go without a depth searches to*/
+
+public class EngineServer {
+
+    //The depth go searches to unless it is given one
+    static final int DEFAULT_DEPTH = 8;
+    //The depth the games played by warmUp are searched to
+    static final int WARM_UP_DEPTH = 5;
+
+    private final ExecutorService pool;
+    private final TranspositionTable xTable;
+    private final TranspositionTable oTable;
+    private final Evaluator evaluator;
+    private final OpeningBook book;
+    //Listens to the searches of all the sessions
+    private final SearchMonitor monitor = new SearchMonitor();
+    //The endgame solver and the move ordering of every pool thread, made the first time it searches
+    private final ThreadLocal<EndgameSolver> solvers = ThreadLocal.withInitial(EndgameSolver::new);
+    private final ThreadLocal<MoveOrdering> orderings = ThreadLocal.withInitial(MoveOrdering::new);
+    //The ones of the searches stop runs on the sessions' own threads, one at a time
+    private final EndgameSolver stopSolver = new EndgameSolver();
+    private final MoveOrdering stopOrdering = new MoveOrdering();
+    private int defaultDepth = DEFAULT_DEPTH;
+    private ServerSocket serverSocket;
+
+    //book can be null, for no opening book. The evaluator is shared by all the searches, so it must not keep any state.
+
+    public EngineServer(int threads, int tableBits, Evaluator evaluator, OpeningBook book) {
+        pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Engine search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        xTable = new TranspositionTable(tableBits);
+        oTable = new TranspositionTable(tableBits);
+        this.evaluator = evaluator;
+        this.book = book;
+    }
+
+    public void setDefaultDepth(int defaultDepth) {
+        this.defaultDepth = defaultDepth;
+    }
+
+    public SearchMonitor getMonitor() {
+        return monitor;
+    }
+
+    //Creates a player for a session. Its table is the shared one of its color.
+
+    private Gaming createPlayer(char tileColor) {
+        Gaming gaming = new Gaming(defaultDepth, tileColor, tileColor == 'X' ? xTable : oTable);
+        //not setEvaluator, which would empty the table all the sessions share
+        gaming.score = evaluator;
+        gaming.setOpeningBook(book);
+        gaming.addSearchListener(monitor);
+        return gaming;
+    }
+
+    /*Plays a few games against itself, so that the JIT has compiled the search before the first real move.
+    The tables are emptied afterwards, so the first game starts with nothing in them, as all the others could.*/
+
+    public void warmUp(int games) {
+        Gaming xPlayer = createPlayer('X');
+        Gaming oPlayer = createPlayer('O');
+        xPlayer.setMaxDepth(WARM_UP_DEPTH);
+        oPlayer.setMaxDepth(WARM_UP_DEPTH);
+        xPlayer.removeSearchListener(monitor);
+        oPlayer.removeSearchListener(monitor);
+        xPlayer.setOpeningBook(null);
+        oPlayer.setOpeningBook(null);
+        for (int game = 0; game < games; game++) {
+            State state = new State();
+            char tileColor = 'X';
+            int passes = 0;
+            while (passes < 2) {
+                state.moveGenerator(state, tileColor);
+                if (state.validMoves == 0) {
+                    passes++;
+                } else {
+                    passes = 0;
+                    state.makeMove((tileColor == 'X' ? xPlayer : oPlayer).findBestMove(state).getBestMove(), tileColor);
+                }
+                tileColor = (tileColor == 'X') ? 'O' : 'X';
+            }
+        }
+        xTable.clear();
+        oTable.clear();
+    }
+
+    //Runs a session on the calling thread until it sends quit or closes its input. Returns true if it sent quit.
+
+    public boolean serve(InputStream in, OutputStream out) throws IOException {
+        Session session = new Session(new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!session.command(line.trim())) return true;
+            }
+            return false;
+        } finally {
+            session.stop();
+        }
+    }
+
+    //Accepts sessions on the port of this machine until close is called, every one of them on its own thread.
+
+    public void listen(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) return;
+                throw e;
+            }
+            Thread thread = new Thread(() -> {
+                try (Socket connection = socket) {
+                    serve(connection.getInputStream(), connection.getOutputStream());
+                } catch (IOException e) {
+                    //the connection was lost, which ends its session like a quit
+                }
+            }, "Engine session " + socket.getRemoteSocketAddress());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    //Stops accepting sessions and stops the searches still running.
+
+    public void close() throws IOException {
+        if (serverSocket != null) serverSocket.close();
+        pool.shutdownNow();
+    }
+
+    //One game: its position, its two players and the search it is running.
+    private class Session {
+        private final PrintWriter out;
+        private State position = new State();
+        private char toMove = 'X';
+        //The players searching for X and O, created the first time they are needed
+        private final Gaming[] players = new Gaming[2];
+        private Future<?> search;
+        private Gaming searching;
+        //What the search runs on, to search it at once if stop comes before the pool started it
+        private State searchBoard;
+        //Set by whichever comes first, the pool starting the search or stop dropping it
+        private AtomicBoolean started;
+        private volatile String lastBestMove = "bestmove none";
+
+        Session(PrintWriter out) {
+            this.out = out;
+        }
+
+        //Lines are sent by the session's thread and by the search threads, so one is always written whole.
+
+        private void send(String line) {
+            synchronized (out) {
+                out.println(line);
+                out.flush();
+            }
+        }
+
+        private Gaming player(char tileColor) {
+            int index = tileColor == 'X' ? 0 : 1;
+            if (players[index] == null) {
+                Gaming gaming = createPlayer(tileColor);
+                gaming.addSearchListener(new SearchListener() {
+                    public void iterationFinished(int depth, int bestMove, int score, long nodes, long nanos) {
+                        send("info depth " + depth + " move " + State.squareName(bestMove).toLowerCase() + " score " + score
+                                + " nodes " + nodes + " time " + nanos / 1000000);
+                    }
+                });
+                players[index] = gaming;
+            }
+            return players[index];
+        }
+
+        //Runs one command. Returns false if it was quit.
+
+        boolean command(String line) {
+            String[] words = line.split("\\s+");
+            try {
+                switch (words[0]) {
+                    case "": break;
+                    case "position": position(words); break;
+                    case "go": go(words); break;
+                    case "stop": stop(); break;
+                    case "bestmove": send(lastBestMove); break;
+                    case "isready": send("readyok"); break;
+                    case "quit": return false;
+                    default: send("error unknown command " + words[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                send("error " + e.getMessage());
+            }
+            return true;
+        }
+
+        private void position(String[] words) {
+            if (running()) throw new IllegalArgumentException("a search is running, stop it first");
+            if (words.length < 2) throw new IllegalArgumentException("position needs startpos or a board");
+            State board;
+            char tileColor;
+            int next;
+            if (words[1].equals("startpos")) {
+                board = new State();
+                tileColor = 'X';
+                next = 2;
+            } else {
+                if (words.length < 3) throw new IllegalArgumentException("a board needs the player to move, X or O");
+                board = new State(words[1]);
+                tileColor = Character.toUpperCase(words[2].charAt(0));
+                if (tileColor != 'X' && tileColor != 'O') throw new IllegalArgumentException("the player to move is X or O");
+                next = 3;
+            }
+            if (next < words.length) {
+                if (!words[next].equals("moves")) throw new IllegalArgumentException("unknown word " + words[next]);
+                for (int i = next + 1; i < words.length; i++) {
+                    char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+                    long moves = Bitboard.moves(board.getTiles(tileColor), board.getTiles(opponentTileColor));
+                    if (words[i].equals("pass")) {
+                        if (moves != 0) throw new IllegalArgumentException(tileColor + " cannot pass, it has a move");
+                    } else {
+                        int move = State.square(words[i]);
+                        if (move < 0 || (moves & (1L << move)) == 0) {
+                            throw new IllegalArgumentException(words[i] + " is not a valid move for " + tileColor);
+                        }
+                        board.makeMove(move, tileColor);
+                    }
+                    tileColor = opponentTileColor;
+                }
+            }
+            position = board;
+            toMove = tileColor;
+        }
+
+        private void go(String[] words) {
+            if (running()) throw new IllegalArgumentException("a search is already running");
+            int depth = defaultDepth;
+            long time = 0;
+            for (int i = 1; i < words.length; i += 2) {
+                if (i + 1 == words.length) throw new IllegalArgumentException(words[i] + " needs a value");
+                switch (words[i]) {
+                    case "depth": depth = Integer.parseInt(words[i + 1]); break;
+                    case "time": time = Long.parseLong(words[i + 1]); break;
+                    default: throw new IllegalArgumentException("unknown word " + words[i]);
+                }
+            }
+            char opponentTileColor = (toMove == 'X') ? 'O' : 'X';
+            State board = new State(position);
+            board.moveGenerator(board, toMove);
+            if (board.validMoves == 0) {
+                boolean over = Bitboard.moves(board.getTiles(opponentTileColor), board.getTiles(toMove)) == 0;
+                lastBestMove = over ? "bestmove none" : "bestmove pass";
+                send(lastBestMove);
+                return;
+            }
+            Gaming gaming = player(toMove);
+            gaming.setMaxDepth(depth);
+            gaming.setTimeBudget(time);
+            AtomicBoolean claim = new AtomicBoolean();
+            searching = gaming;
+            searchBoard = board;
+            started = claim;
+            //here and not in the search, so that a stop that comes before the search starts is not undone
+            gaming.clearStop();
+            search = pool.submit(() -> {
+                if (claim.compareAndSet(false, true)) answer(gaming, board, solvers.get(), orderings.get());
+            });
+        }
+
+        /*Searches the board with the solver and the ordering of the calling thread and sends the move found.
+        A search that fails sends an error line instead, so that the session is not left waiting for a bestmove,
+        and the failure is logged, since nothing ever looks at the Future of a search.*/
+
+        private void answer(Gaming gaming, State board, EndgameSolver solver, MoveOrdering ordering) {
+            try {
+                gaming.setEndgameSolver(solver);
+                gaming.setMoveOrdering(ordering);
+                SearchResult result = gaming.findBestMove(board);
+                SearchStatistics statistics = gaming.getLastStatistics();
+                String line = "bestmove " + State.squareName(result.getBestMove()).toLowerCase()
+                        + " score " + result.getScore() + " depth " + result.getDepth()
+                        + " nodes " + result.getNodes() + " time " + statistics.getNanos() / 1000000
+                        + " pv " + result.principalVariationString().toLowerCase();
+                lastBestMove = line;
+                send(line);
+            } catch (RuntimeException e) {
+                System.err.println("The search of a session failed:");
+                e.printStackTrace();
+                send("error search failed: " + e);
+            }
+        }
+
+        private boolean running() {
+            return search != null && !search.isDone();
+        }
+
+        /*Stops the running search, if any. A search the pool has not started yet is dropped
+        and searched to depth 1 at once instead, so that every go still gets its bestmove.*/
+
+        void stop() {
+            if (search == null || search.isDone()) return;
+            if (started.compareAndSet(false, true)) {
+                search.cancel(false);
+                searching.setMaxDepth(1);
+                synchronized (stopSolver) {
+                    answer(searching, searchBoard, stopSolver, stopOrdering);
+                }
+            } else {
+                searching.stop();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int tableBits = Gaming.DEFAULT_TABLE_BITS;
+        int depth = DEFAULT_DEPTH;
+        for (String setting : args) {
+            int split = setting.indexOf('=');
+            if (split < 0) throw new IllegalArgumentException("Settings are written as name=value, not " + setting);
+            String value = setting.substring(split + 1);
+            switch (setting.substring(0, split)) {
+                case "port": port = Integer.parseInt(value); break;
+                case "threads": threads = Integer.parseInt(value); break;
+                case "tableBits": tableBits = Integer.parseInt(value); break;
+                case "depth": depth = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown setting " + setting);
+            }
+        }
+
+        //The pattern weights and the opening book are used if they are found, as in Main
+        Evaluator evaluator = new Heuristic();
+        Path weights = Paths.get(Main.PATTERN_WEIGHTS);
+        if (Files.exists(weights)) evaluator = new PatternEvaluator(weights);
+        Path bookFile = Paths.get(Main.OPENING_BOOK);
+        OpeningBook book = Files.exists(bookFile) ? new OpeningBook(bookFile) : null;
+
+        EngineServer server = new EngineServer(threads, tableBits, evaluator, book);
+        server.setDefaultDepth(depth);
+        try {
+            server.getMonitor().register("server");
+        } catch (JMException e) {
+            System.err.println("Could not register the search monitor: " + e.getMessage());
+        }
+        server.warmUp(2);
+
+        if (port == 0) {
+            server.serve(System.in, System.out);
+            server.close();
+            return;
+        }
+        //with a port the console is served on its own thread, and closing it leaves the server running
+        int listenPort = port;
+        Thread listener = new Thread(() -> {
+            try {
+                server.listen(listenPort);
+            } catch (IOException e) {
+                System.err.println("Could not listen on port " + listenPort + ": " + e.getMessage());
+            }
+        }, "Engine listener");
+        listener.start();
+        if (server.serve(System.in, System.out)) {
+            server.close();
+        }
+        listener.join();
+    }
+}
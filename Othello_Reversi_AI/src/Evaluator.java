@@ -0,0 +1,17 @@
+/*Gives a score to a State at the depth limit of the search, from the side of the player with tileColor.
+The greater the score, the better the State is for that player.
+Heuristic and PatternEvaluator are the two implementations. One Evaluator may be used by several
+searching threads at once, so an implementation must not change any state while evaluating.*/
+
+public interface Evaluator {
+
+    int evaluate(State currentState, char tileColor, char opponentTileColor);
+
+    /*True if the 8 symmetric copies of a State (see Symmetry) always get the same score.
+    Only then may the transposition table and the opening book keep one entry for all 8 of them,
+    so an Evaluator that does not know it must not say so. Heuristic and PatternEvaluator are checked by their tests.*/
+
+    default boolean isSymmetric() {
+        return false;
+    }
+}
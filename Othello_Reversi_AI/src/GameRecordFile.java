@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*A file of finished games in a compact binary form, and the index that finds any game in it without reading the others.
+The records file holds a header and then the games one after another. Every game is a GAME_HEADER_BYTES header
+(its number of moves, the final X and O discs and the flags) and then one byte per move, the square played.
+Every game starts from the initial position with X to move. Passes are not stored, since a player only passes
+when there is no move to play: a move the player to move cannot play is the other player's, after a pass.
+The index file, the records file's name with .idx added, holds a header and then the offset of every game in the records file.
+Both are memory mapped, so opening them costs nothing, and any game or any position in it is reached
+by reading its offset and replaying at most 60 moves. Nothing is written after opening except a missing index,
+so one GameRecordFile can be used by any number of threads. The files are written by GameRecordWriter.
+
+Usage: java GameRecordFile <records file> [game] [ply]
+Without a game it prints the number of games and how fast they replay, with one it prints its moves,
+and with a ply too it prints the board after that many moves and the player to move.*/
+
+public class GameRecordFile {
+
+    //Both files start with these 4 ints: a magic number, the version, the number of games and an unused one
+    static final int MAGIC = 0x5247544F;
+    static final int INDEX_MAGIC = 0x5849544F;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    //A game starts with its number of moves, the final X and O discs and the flags, one byte each
+    static final int GAME_HEADER_BYTES = 4;
+    //The flags of a game: which players were the engine, the others being human
+    static final int X_ENGINE = 1;
+    static final int O_ENGINE = 2;
+
+    private final MappedByteBuffer records;
+    private final MappedByteBuffer index;
+    private final int count;
+
+    //Maps the records file and its index. If the index is missing, or does not have every game, it is built first.
+
+    public GameRecordFile(Path file) throws IOException {
+        records = map(file);
+        if (records.getInt(0) != MAGIC || records.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a game records file of this version");
+        }
+        count = records.getInt(8);
+        Path indexFile = indexFile(file);
+        if (!indexIsCurrent(indexFile, count)) {
+            buildIndex(file);
+        }
+        index = map(indexFile);
+        if (index.getInt(0) != INDEX_MAGIC || index.getInt(4) != VERSION || index.getInt(8) != count) {
+            throw new IOException(indexFile + " is not the index of " + file);
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is too short to hold games");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    //The index file of a records file.
+
+    static Path indexFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /*True if the index file exists and has the offsets of count games, in its size and in its header.
+    A writer that crashed can leave an index with a game more or a game less than the records file counts.*/
+
+    static boolean indexIsCurrent(Path indexFile, int count) throws IOException {
+        if (!Files.exists(indexFile) || Files.size(indexFile) != HEADER_BYTES + 8L * count) return false;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            channel.read(header, 0);
+        }
+        return header.getInt(0) == INDEX_MAGIC && header.getInt(4) == VERSION && header.getInt(8) == count;
+    }
+
+    /*Writes the index of a records file by reading all its games once.
+    Only needed for a records file whose index was lost, since GameRecordWriter keeps it up to date.*/
+
+    public static void buildIndex(Path file) throws IOException {
+        MappedByteBuffer records = map(file);
+        if (records.getInt(0) != MAGIC || records.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a game records file of this version");
+        }
+        int count = records.getInt(8);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 8 * count).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(INDEX_MAGIC).putInt(VERSION).putInt(count).putInt(0);
+        long offset = HEADER_BYTES;
+        for (int game = 0; game < count; game++) {
+            if (offset + GAME_HEADER_BYTES > records.capacity()) {
+                throw new IOException(file + " ends before its game " + game);
+            }
+            buffer.putLong(offset);
+            offset += GAME_HEADER_BYTES + (records.get((int) offset) & 0xFF);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(indexFile(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    //The offset of a game in the records file, read from the index.
+
+    private int offset(int game) {
+        if (game < 0 || game >= count) {
+            throw new IndexOutOfBoundsException("No game " + game + " in " + count + " games");
+        }
+        return (int) index.getLong(HEADER_BYTES + 8 * game);
+    }
+
+    public int moveCount(int game) {
+        return records.get(offset(game)) & 0xFF;
+    }
+
+    public int xDiscs(int game) {
+        return records.get(offset(game) + 1) & 0xFF;
+    }
+
+    public int oDiscs(int game) {
+        return records.get(offset(game) + 2) & 0xFF;
+    }
+
+    public int flags(int game) {
+        return records.get(offset(game) + 3) & 0xFF;
+    }
+
+    //Returns the square of the ply-th move of a game, counting from 0.
+
+    public int move(int game, int ply) {
+        int offset = offset(game);
+        if (ply < 0 || ply >= (records.get(offset) & 0xFF)) {
+            throw new IndexOutOfBoundsException("No move " + ply + " in game " + game);
+        }
+        return records.get(offset + GAME_HEADER_BYTES + ply);
+    }
+
+    /*Sets board to the position of a game after its first plies moves, and returns the player to move there:
+    the one who plays the next move, or the one after the last move if the game is over.
+    board is reused, so positions can be replayed without creating a State for each.*/
+
+    public char replay(int game, int plies, State board) {
+        int offset = offset(game);
+        int moves = records.get(offset) & 0xFF;
+        if (plies < 0 || plies > moves) {
+            throw new IndexOutOfBoundsException("No ply " + plies + " in game " + game);
+        }
+        start(board);
+        char tileColor = 'X';
+        for (int ply = 0; ply < plies; ply++) {
+            tileColor = play(board, tileColor, records.get(offset + GAME_HEADER_BYTES + ply));
+            tileColor = (tileColor == 'X') ? 'O' : 'X';
+        }
+        if (plies < moves) {
+            //the next move tells if the player to move passes first
+            int next = records.get(offset + GAME_HEADER_BYTES + plies);
+            long player = board.getTiles(tileColor);
+            long opponent = board.getTiles(tileColor == 'X' ? 'O' : 'X');
+            if (Bitboard.flips(next, player, opponent) == 0) tileColor = (tileColor == 'X') ? 'O' : 'X';
+        }
+        return tileColor;
+    }
+
+    //Is told about every move replayed by replayAll, before it is played. board must not be changed or kept.
+
+    public interface Visitor {
+        void position(int game, int ply, State board, char tileColor, int move);
+    }
+
+    //Replays every game, telling visitor about every move if it is not null, and returns the number of moves replayed.
+
+    public long replayAll(Visitor visitor) {
+        State board = new State();
+        long replayed = 0;
+        for (int game = 0; game < count; game++) {
+            int offset = offset(game);
+            int moves = records.get(offset) & 0xFF;
+            start(board);
+            char tileColor = 'X';
+            for (int ply = 0; ply < moves; ply++) {
+                int move = records.get(offset + GAME_HEADER_BYTES + ply);
+                if (visitor != null) {
+                    char mover = Bitboard.flips(move, board.getTiles(tileColor), board.getTiles(tileColor == 'X' ? 'O' : 'X')) == 0
+                            ? (tileColor == 'X' ? 'O' : 'X') : tileColor;
+                    visitor.position(game, ply, board, mover, move);
+                }
+                tileColor = play(board, tileColor, move);
+                tileColor = (tileColor == 'X') ? 'O' : 'X';
+            }
+            replayed += moves;
+        }
+        return replayed;
+    }
+
+    private static void start(State board) {
+        board.xTiles = (1L << 28) | (1L << 35);
+        board.oTiles = (1L << 27) | (1L << 36);
+    }
+
+    /*Plays move on board for tileColor, or for the other player if tileColor cannot play it, which means
+    tileColor passed. Returns the color of the player who played it. A move neither player can play
+    is a broken record and throws an IllegalArgumentException.*/
+
+    static char play(State board, char tileColor, int move) {
+        if (move < 0 || move >= State.dimension * State.dimension || (~board.getEmpty() & (1L << move)) != 0) {
+            throw new IllegalArgumentException("Not a valid move in a game record: " + move);
+        }
+        char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+        long flipped = Bitboard.flips(move, board.getTiles(tileColor), board.getTiles(opponentTileColor));
+        if (flipped == 0) {
+            tileColor = opponentTileColor;
+            flipped = Bitboard.flips(move, board.getTiles(tileColor), board.getTiles(tileColor == 'X' ? 'O' : 'X'));
+            if (flipped == 0) {
+                throw new IllegalArgumentException("Neither player can play " + State.squareName(move) + " in a game record");
+            }
+        }
+        if (tileColor == 'X') {
+            board.xTiles |= flipped | (1L << move);
+            board.oTiles &= ~flipped;
+        } else {
+            board.oTiles |= flipped | (1L << move);
+            board.xTiles &= ~flipped;
+        }
+        return tileColor;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java GameRecordFile <records file> [game] [ply]");
+            return;
+        }
+        GameRecordFile file = new GameRecordFile(Paths.get(args[0]));
+        if (args.length == 1) {
+            System.out.println(file.size() + " games");
+            //replayed a few times, so that the time is not only the first compilation
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                long moves = file.replayAll(null);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%d moves replayed in %.3f s, %.0f moves a second%n", moves, seconds, moves / seconds);
+            }
+            return;
+        }
+        int game = Integer.parseInt(args[1]);
+        if (args.length == 2) {
+            StringBuilder moves = new StringBuilder();
+            for (int ply = 0; ply < file.moveCount(game); ply++) {
+                moves.append(State.squareName(file.move(game, ply)).toLowerCase()).append(' ');
+            }
+            System.out.println("Game " + game + ": X " + file.xDiscs(game) + " O " + file.oDiscs(game)
+                    + ((file.flags(game) & X_ENGINE) != 0 ? ", X engine" : "")
+                    + ((file.flags(game) & O_ENGINE) != 0 ? ", O engine" : ""));
+            System.out.println(moves.toString().trim());
+            return;
+        }
+        State board = new State();
+        char tileColor = file.replay(game, Integer.parseInt(args[2]), board);
+        board.moveGenerator(board, tileColor);
+        board.printState(board);
+        System.out.println(tileColor + " to move");
+    }
+}
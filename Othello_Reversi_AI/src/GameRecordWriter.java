@@ -0,0 +1,125 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*Appends finished games to a records file in the format of GameRecordFile, and their offsets to its index.
+A file that does not exist yet is created. Every game is written as soon as write is called, so the games
+written before a crash are kept. A game is only counted once it is all written, and whatever a crash left
+after the last game counted is cut off when the file is opened again, so the next game goes where it belongs.
+write is synchronized, so one writer can be shared by several threads.*/
+
+public class GameRecordWriter implements Closeable {
+
+    private final FileChannel records;
+    private final FileChannel index;
+    private int count;
+    //Where the next game goes: the end of the last game counted
+    private long end = GameRecordFile.HEADER_BYTES;
+
+    //Opens a records file to append to, creating it and its index if they do not exist.
+
+    public GameRecordWriter(Path file) throws IOException {
+        records = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (records.size() == 0) {
+                writeFully(records, header(GameRecordFile.MAGIC, 0), 0);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(GameRecordFile.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                records.read(header, 0);
+                if (header.getInt(0) != GameRecordFile.MAGIC || header.getInt(4) != GameRecordFile.VERSION) {
+                    throw new IOException(file + " is not a game records file of this version");
+                }
+                count = header.getInt(8);
+            }
+            Path indexFile = GameRecordFile.indexFile(file);
+            if (!GameRecordFile.indexIsCurrent(indexFile, count)) {
+                GameRecordFile.buildIndex(file);
+            }
+            index = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            records.close();
+            throw e;
+        }
+        try {
+            if (count > 0) {
+                ByteBuffer last = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(index, last, GameRecordFile.HEADER_BYTES + 8L * (count - 1));
+                long offset = last.getLong(0);
+                ByteBuffer moves = ByteBuffer.allocate(1);
+                readFully(records, moves, offset);
+                end = offset + GameRecordFile.GAME_HEADER_BYTES + (moves.get(0) & 0xFF);
+                if (end > records.size()) {
+                    throw new IOException(file + " ends before its game " + (count - 1));
+                }
+            }
+            //a game a crash left half written, after the ones counted
+            if (records.size() > end) records.truncate(end);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer header(int magic, int count) {
+        ByteBuffer header = ByteBuffer.allocate(GameRecordFile.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(magic).putInt(GameRecordFile.VERSION).putInt(count).putInt(0);
+        header.flip();
+        return header;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of a game records file");
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /*Appends a game: its first moveCount moves, the squares played from the initial position, passes left out,
+    and its flags, X_ENGINE and O_ENGINE of GameRecordFile. The moves are replayed first, to get the final discs
+    and to make sure that no broken game is ever written, so a move no player can play throws an IllegalArgumentException.*/
+
+    public synchronized void write(byte[] moves, int moveCount, int flags) throws IOException {
+        State board = new State();
+        char tileColor = 'X';
+        for (int ply = 0; ply < moveCount; ply++) {
+            tileColor = GameRecordFile.play(board, tileColor, moves[ply]);
+            tileColor = (tileColor == 'X') ? 'O' : 'X';
+        }
+        ByteBuffer game = ByteBuffer.allocate(GameRecordFile.GAME_HEADER_BYTES + moveCount);
+        game.put((byte) moveCount).put((byte) board.countTiles('X')).put((byte) board.countTiles('O')).put((byte) flags);
+        game.put(moves, 0, moveCount);
+        game.flip();
+        ByteBuffer entry = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(end);
+        entry.flip();
+        //the game and its offset first, so that the counts never take in a game that is not all written
+        writeFully(records, game, end);
+        writeFully(index, entry, GameRecordFile.HEADER_BYTES + 8L * count);
+        end += GameRecordFile.GAME_HEADER_BYTES + moveCount;
+        count++;
+        //the index header before the records one: an index counting a game more than the records file is rebuilt
+        writeFully(index, header(GameRecordFile.INDEX_MAGIC, count), 0);
+        writeFully(records, header(GameRecordFile.MAGIC, count), 0);
+    }
+
+    public synchronized void close() throws IOException {
+        try {
+            records.close();
+        } finally {
+            index.close();
+        }
+    }
+}
@@ -1,120 +1,1042 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*A Gaming object is one cpu player. It keeps no static state, so any number of Gaming objects
+can search at the same time, each one on its own thread and its own games.
+findBestMove is synchronized, so a single Gaming object shared by several threads searches one position at a time.*/
 
 public class Gaming {
 
-    Heuristic score = new Heuristic();
+    //Gives the states at the depth limit their score. The Heuristic unless another one is set
+    Evaluator score = new Heuristic();
+    //Used to choose randomly between moves with the same value
+    private Random r = new Random();
 
     //Variable that holds the maximum depth the MiniMax algorithm will reach for this player
     private int maxDepth;
     //Variable that holds which letter this player controls
     private char playerColor;
+    //Remembers the positions already searched. Its scores are from the side of the player to move,
+    //but the evaluator is asked from this player's side, so a table should only be shared by Gaming objects playing the same color.
+    private TranspositionTable table;
+    //Counts the positions visited by the searches of this object
+    private long nodeCount;
+    //Counts the states evaluated at the depth limit, the table probes and the probes that found an entry
+    private long leafCount;
+    private long tableProbes;
+    private long tableHits;
+    //Told about every iteration and every move. Empty unless someone listens, so that nothing is built for nobody
+    private final List<SearchListener> listeners = new CopyOnWriteArrayList<SearchListener>();
+    //The statistics of the last move chosen
+    private SearchStatistics lastStatistics;
+    //The nodes and the time of every iteration of the current move, indexed by depth
+    private long[] iterationNodes = new long[0];
+    private long[] iterationNanos = new long[0];
+    //True for the helpers of another Gaming object, which report nothing themselves
+    private boolean helper;
+    //Counts the nodes cut off by ProbCut
+    private long probCutCount;
+    //Cuts the nodes a shallow search says are far outside the window, see ProbCut. null searches every node
+    private ProbCut probCut;
+    //Set while ProbCut's shallow searches run. They start at the node itself with a lowered depthLimit, so nothing
+    //they find is stored: it would replace the deeper entries of the same positions, and a cut stores nothing deeper
+    private boolean probing;
+    //Decides in which order the moves are searched. Made the first time it is needed, unless one is given with setMoveOrdering
+    private MoveOrdering ordering;
+    //States with at least this many empty cells are stored in the table under the hash of their canonical form,
+    //so that their symmetric copies share one entry. Above 60 it is turned off, and so it is if the evaluator is not symmetric
+    private int symmetricEmpties = DEFAULT_SYMMETRIC_EMPTIES;
+    //The symmetry the last tableKey call turned the state with, to turn the best moves of the table back
+    private int keySymmetry;
+    //The book the opening moves are played from instead of searched, or null
+    private OpeningBook book;
+    //Solves the last moves of the game exactly. Made the first time a move is solved, unless one is given with setEndgameSolver,
+    //so that a player that never gets to the endgame never allocates the solver's table
+    private EndgameSolver solver;
+    //With this many empty cells or fewer the game is solved instead of searched. 0 turns the solver off
+    private int endgameEmpties = DEFAULT_ENDGAME_EMPTIES;
+    //If true the solver only finds out if a move wins, draws or loses, which is faster than the exact disc difference
+    private boolean winLossOnly;
+    //The time a move may take in milliseconds, or 0 if the search always goes to maxDepth
+    private long timeBudget;
+    //The depth of the current iteration of the search, the depth at which search evaluates
+    private int depthLimit;
+    //The System.nanoTime() after which the current iteration is abandoned
+    private long deadline;
+    //Set when the deadline passed. The scores of an aborted iteration are meaningless and thrown away
+    private boolean aborted;
+    //Set by the main Gaming object to stop its helpers when its own search is over, and by stop to stop the main search
+    private volatile boolean stopped;
+    //Set when an iteration evaluated a state at its depth limit, so that a deeper one could still change the result
+    private boolean horizonReached;
+    //The score of the best move of the last root search
+    private int rootScore;
+    //The depth of the last iteration that finished
+    private int lastDepth;
+    //The principal variations of the nodes on the line being searched, indexed by their depth: pvMoves[depth] holds
+    //the best line found from the node at that depth, pvLength[depth] moves long. They are filled in place, so the search allocates nothing
+    private int[][] pvMoves = new int[1][1];
+    private int[] pvLength = new int[1];
+    //The principal variation of the deepest iteration that finished
+    private int[] lastPv = new int[0];
+    //What the last findBestMove call found
+    private SearchResult lastResult;
+    //How many threads search every move
+    private int threads = 1;
+    //The Gaming objects searching next to this one when there is more than one thread, and their threads
+    private Gaming[] helpers;
+    private ExecutorService helperPool;
+    //If true the search goes on during the opponent's turn, see setPondering
+    private boolean pondering;
+    //Searches on the opponent's time, on a thread of its own, sharing this object's table
+    private Gaming ponderer;
+    private Thread ponderThread;
+    //Set to make the ponder thread give up the positions it has not searched yet
+    private volatile boolean ponderStopped;
+    //The hash of the position the ponderer is searching right now, with this player to move. 0 when it searches none
+    private volatile long ponderHash;
+    //What the ponderer found for every position it finished, by their hash. Also what its thread notifies on
+    private final Map<Long, SearchResult> pondered = new HashMap<Long, SearchResult>();
+
+    //The size of the transposition table when none is given, 2^20 entries (16 MB)
+    static final int DEFAULT_TABLE_BITS = 20;
+    //The number of empty cells the endgame solver takes over at, unless set otherwise
+    static final int DEFAULT_ENDGAME_EMPTIES = 14;
+    //The number of empty cells down to which the table uses canonical keys, unless set otherwise.
+    //Symmetric copies of a position are common in the opening and almost never happen later.
+    static final int DEFAULT_SYMMETRIC_EMPTIES = 50;
+    //The score of a won game, plus the disc difference. It is above anything an Evaluator returns,
+    //so a certain win is always preferred to a good looking position, and a certain loss avoided.
+    static final int WIN_SCORE = 1000000;
+    //Above every score, and its opposite below every score. Integer.MIN_VALUE is not used, since it cannot be negated
+    static final int INFINITY = Integer.MAX_VALUE;
+    //Returned by probCut when it does not cut the node. No search returns it
+    private static final int NO_CUT = Integer.MIN_VALUE;
+    //From this depth on every iteration first searches a window of ASPIRATION_WINDOW on both sides of the score
+    //of the one before, and widens it four times whenever the score falls outside
+    static final int ASPIRATION_DEPTH = 4;
+    static final int ASPIRATION_WINDOW = 16;
 
     //Default constructor. The depth is assigned to 2 randomly. Xs always play first, so the player's tile color is X.
 
     public Gaming() {
-        maxDepth = 2;
-        playerColor = 'X';
+        this(2, 'X');
     }
 
     //This constructor is the one used in the main method to initialize the gaming object
     //with the user's choices as parameters.
 
     public Gaming(int maxDepth, char tileColor) {
+        this(maxDepth, tileColor, new TranspositionTable(DEFAULT_TABLE_BITS));
+    }
+
+    //Same as above, with the transposition table to use. Its size and replacement policy are chosen by the caller.
+
+    public Gaming(int maxDepth, char tileColor, TranspositionTable table) {
         this.maxDepth = maxDepth;
         playerColor = tileColor;
+        this.table = table;
+    }
+
+    //Returns the nodes visited by this object's searches, including the ones of its helper threads and the endgame solver
+    public long getNodeCount() {
+        long nodes = nodeCount;
+        if (helpers != null) {
+            for (Gaming helper : helpers) {
+                nodes += helper.nodeCount;
+            }
+        }
+        return nodes;
+    }
+
+    //Returns the move ordering of this object, to turn its heuristics on and off and to read its counters
+    public synchronized MoveOrdering getMoveOrdering() {
+        if (ordering == null) ordering = new MoveOrdering();
+        return ordering;
+    }
+
+    /*Sets the move ordering and the endgame solver this object searches with. Their tables are the biggest ones
+    after the transposition table, so Gaming objects that never search at the same time, such as the players
+    of EngineServer's sessions whose searches run on the same pool thread, can share one of each
+    instead of every player allocating its own. A helper thread always has its own move ordering.*/
+    public synchronized void setMoveOrdering(MoveOrdering ordering) {
+        this.ordering = ordering;
+    }
+
+    public synchronized void setEndgameSolver(EndgameSolver solver) {
+        this.solver = solver;
+    }
+
+    public Evaluator getEvaluator() {
+        return score;
+    }
+
+    //Sets the evaluation of the states at the depth limit, for this object and its helpers.
+    //The scores stored in the transposition table came from the old one, so the table is emptied.
+    public synchronized void setEvaluator(Evaluator evaluator) {
+        stopPondering();
+        score = evaluator;
+        if (helpers != null) {
+            for (Gaming helper : helpers) {
+                helper.score = evaluator;
+            }
+        }
+        table.clear();
+    }
+
+    public ProbCut getProbCut() {
+        return probCut;
+    }
+
+    //Sets the Multi-ProbCut calibration the search prunes with, for this object and its helpers. null turns it off.
+    //It should be calibrated with the evaluator in use.
+    public synchronized void setProbCut(ProbCut probCut) {
+        this.probCut = probCut;
+        if (helpers != null) {
+            for (Gaming helper : helpers) {
+                helper.probCut = probCut;
+            }
+        }
+    }
+
+    public int getSymmetricEmpties() {
+        return symmetricEmpties;
+    }
+
+    //States with at least this many empty cells share one table entry with their symmetric copies. Above 60 turns it off.
+    //It is off anyway while the evaluator does not say it is symmetric, see Evaluator.isSymmetric.
+    public synchronized void setSymmetricEmpties(int symmetricEmpties) {
+        this.symmetricEmpties = symmetricEmpties;
+        if (helpers != null) {
+            for (Gaming helper : helpers) {
+                helper.symmetricEmpties = symmetricEmpties;
+            }
+        }
+    }
+
+    public void addSearchListener(SearchListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeSearchListener(SearchListener listener) {
+        listeners.remove(listener);
+    }
+
+    //Returns the statistics of the last move findBestMove chose, or null before the first one
+    public SearchStatistics getLastStatistics() {
+        return lastStatistics;
+    }
+
+    //Returns what the last findBestMove or MiniMax call found, a pass included, or null before the first one
+    public SearchResult getLastResult() {
+        return lastResult;
+    }
+
+    public OpeningBook getOpeningBook() {
+        return book;
+    }
+
+    //Sets the book MiniMax looks every position up in before searching it. null turns it off.
+    //The book finds a position under any of its symmetric copies, so it is only used while the evaluator is symmetric.
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    public int getEndgameEmpties() {
+        return endgameEmpties;
+    }
+
+    //Sets the number of empty cells at which the endgame solver takes over. 0 turns it off.
+    public void setEndgameEmpties(int endgameEmpties) {
+        this.endgameEmpties = endgameEmpties;
+    }
+
+    public boolean isWinLossOnly() {
+        return winLossOnly;
+    }
+
+    public void setWinLossOnly(boolean winLossOnly) {
+        this.winLossOnly = winLossOnly;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    //Sets the deepest iteration of the search, for this object and its helpers.
+    public synchronized void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1");
+        }
+        this.maxDepth = maxDepth;
+        if (helpers != null) {
+            for (Gaming helper : helpers) {
+                helper.maxDepth = maxDepth;
+            }
+        }
+    }
+
+    /*Stops the search MiniMax is running on another thread, as if its time budget had run out:
+    it returns the best move of the deepest iteration that finished. Depth 1 is still finished,
+    and a move the endgame solver is solving is not stopped. The stop lasts until clearStop,
+    so a search that has been handed to another thread but has not started yet is stopped too.*/
+    public void stop() {
+        stopped = true;
+    }
+
+    /*Lets the searches run again after a stop. findBestMove does not do it itself, since it would undo a stop
+    that came before it started: whoever starts a search that can be stopped calls it first,
+    before handing the search to another thread.*/
+    public void clearStop() {
+        stopped = false;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    //Gives every move a budget of the given milliseconds. maxDepth is still the deepest the search goes.
+    //A budget of 0 turns it off, so that every move is searched to maxDepth.
+
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    //Returns the depth the last move was searched to
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /*Sets how many threads search every move. With more than one, the search is a Lazy SMP one:
+    helper threads search the same position at the same time, each one on its own copy of the board,
+    and they share this object's transposition table, so what one of them finds saves work for the others.
+    The move played is always the one of this object's own search, so it is as good as the
+    single threaded search at the same depth, only found sooner.*/
+    public synchronized void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+        }
+        this.threads = threads;
+        helpers = null;
+        helperPool = null;
+        if (threads > 1) {
+            helpers = new Gaming[threads - 1];
+            for (int i = 0; i < helpers.length; i++) {
+                helpers[i] = new Gaming(maxDepth, playerColor, table);
+                helpers[i].ordering = new MoveOrdering(getMoveOrdering());
+                helpers[i].score = score;
+                helpers[i].symmetricEmpties = symmetricEmpties;
+                helpers[i].probCut = probCut;
+                helpers[i].helper = true;
+            }
+            helperPool = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "Gaming helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public boolean isPondering() {
+        return pondering;
+    }
+
+    /*Turns pondering on or off. With it on, the search goes on after MiniMax returned its move, on a thread of its own,
+    while the opponent thinks: first the position after the reply the search expects, then the positions after
+    all the other replies, each one searched as MiniMax would, with the same depth and time budget.
+    If the opponent plays a reply already searched, the next MiniMax plays the move found at once.
+    If he plays the one being searched, that search is finished and its move played. Else the pondering is abandoned,
+    and what it left in the transposition table still makes the search of the move faster.
+    The ponder search is single threaded, and its nodes are not counted by getNodeCount.*/
+    public synchronized void setPondering(boolean pondering) {
+        this.pondering = pondering;
+        if (!pondering) stopPondering();
+    }
+
+    /*Searches position to maxDepth, without a time budget, once with a single thread and once with all the threads,
+    and returns how many times faster the parallel search was. Both searches start from an empty transposition table,
+    so whatever was in it is lost.*/
+    public synchronized double measureSpeedup(State position) {
+        State board = new State(position);
+        board.moveGenerator(board, playerColor);
+        if (board.validMoves == 0) {
+            throw new IllegalArgumentException("The position has no valid moves for " + playerColor);
+        }
+        long hash = Zobrist.hash(board, playerColor);
+        getMoveOrdering();
+        long savedBudget = timeBudget;
+        int savedThreads = threads;
+        timeBudget = 0;
+
+        setThreads(1);
+        table.clear();
+        long start = System.nanoTime();
+        iterate(board, hash, board.validMoves, 1, start);
+        long sequential = System.nanoTime() - start;
+
+        setThreads(Math.max(savedThreads, 2));
+        table.clear();
+        start = System.nanoTime();
+        List<Future<?>> running = startHelpers(board, hash, board.validMoves, start);
+        iterate(board, hash, board.validMoves, 1, start);
+        stopHelpers(running);
+        long parallel = System.nanoTime() - start;
+
+        setThreads(savedThreads);
+        timeBudget = savedBudget;
+        return (double) sequential / parallel;
+    }
+
+    /*Initiates the MiniMax algorithm. Kept for the callers that want the State after the move:
+    it is curState with the move findBestMove chose played, and its score, from the cpu's side.
+    If curState has no valid moves the player passes and curState itself is returned.*/
+    public synchronized State MiniMax(State curState) {
+
+        if (curState.validMoves == 0) {
+            curState.endCounter++;
+            pass(curState);
+            return curState;
+        }
+        curState.totalCounter++;
+        curState.endCounter = 0;
+        SearchResult result = findBestMove(curState);
+        State bestState = new State(curState);
+        bestState.makeMove(result.getBestMove(), playerColor);
+        bestState.setScore(result.getScore());
+        return bestState;
+    }
+
+    /*Chooses the move of this player in curState and returns it, with its score from the cpu's side,
+    the principal variation, the depth reached and the nodes visited. curState itself is not changed.
+    The search plays and takes back the moves on a single copy of curState.
+    A position found in the opening book is not searched, the book move is played.
+    When no more than endgameEmpties cells are empty, the EndgameSolver plays the move instead.
+    It deepens iteratively: depth 1 is searched first, then depth 2 and so on up to maxDepth,
+    each iteration starting with the best move of the one before. With a time budget the iterations
+    stop when it runs out, and the best move of the deepest iteration that finished is played.
+    If this player has no move the result is a pass.*/
+    public synchronized SearchResult findBestMove(State curState) {
+        char opponentColor = (playerColor == 'X') ? 'O' : 'X';
+        long validMoves = Bitboard.moves(curState.getTiles(playerColor), curState.getTiles(opponentColor));
+        if (validMoves == 0) return pass(curState);
+        getMoveOrdering();
+        long startNodes = getNodeCount();
+        long[] startCounters = counters();
+        long startTime = System.nanoTime();
+        SearchResult ponderResult = ponderResult(curState);
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        iterationNodes = new long[maxDepth + 1];
+        iterationNanos = new long[maxDepth + 1];
+        SearchStatistics.Source source = SearchStatistics.Source.SEARCH;
+        State board = new State(curState);
+        long hash = Zobrist.hash(board, playerColor);
+        int empties = Long.bitCount(board.getEmpty());
+        long bookEntry = (book == null || !score.isSymmetric()) ? 0 : book.probe(board.getTiles(playerColor), board.getTiles(opponentColor));
+        int bestMove = (bookEntry == 0) ? -1 : OpeningBook.move(bookEntry);
+        int[] pv;
+        if (ponderResult != null) {
+            //The position was searched while the opponent was thinking
+            source = SearchStatistics.Source.PONDER;
+            bestMove = ponderResult.getBestMove();
+            rootScore = ponderResult.getScore();
+            lastDepth = ponderResult.getDepth();
+            pv = ponderResult.getPrincipalVariation();
+        } else if (bestMove >= 0 && (validMoves & (1L << bestMove)) != 0) {
+            //The position is in the book, so its move is played without searching
+            source = SearchStatistics.Source.BOOK;
+            rootScore = OpeningBook.score(bookEntry);
+            lastDepth = OpeningBook.depth(bookEntry);
+            pv = new int[]{bestMove};
+        } else if (empties <= endgameEmpties) {
+            //Near the end the game is solved exactly, instead of searched to a depth
+            source = SearchStatistics.Source.SOLVER;
+            if (solver == null) solver = new EndgameSolver();
+            long solverNodes = solver.getNodeCount();
+            bestMove = solver.solveRoot(board.getTiles(playerColor), board.getTiles(opponentColor), winLossOnly);
+            nodeCount += solver.getNodeCount() - solverNodes;
+            rootScore = finalScore(solver.getScore());
+            lastDepth = empties;
+            pv = new int[]{bestMove};
+        } else {
+            table.newSearch();
+            ordering.newSearch();
+            long start = System.nanoTime();
+            List<Future<?>> running = startHelpers(board, hash, validMoves, start);
+            bestMove = iterate(board, hash, validMoves, 1, start);
+            stopHelpers(running);
+            pv = lastPv;
+        }
+        report(source, bestMove, startNodes, startCounters, startTime, event);
+        lastResult = new SearchResult(bestMove, rootScore, pv, lastDepth, lastStatistics.getNodes());
+        if (pondering) {
+            board.makeMove(bestMove, playerColor);
+            startPondering(board);
+        }
+        return lastResult;
+    }
+
+    //This player passes in curState, so the opponent moves next in the same position.
+
+    private SearchResult pass(State curState) {
+        stopPondering();
+        if (pondering) startPondering(curState);
+        lastResult = new SearchResult(SearchResult.PASS, 0, new int[]{SearchResult.PASS}, 0, 0);
+        return lastResult;
+    }
+
+    /*Starts pondering position, the one after this player's move with the opponent to move, and returns at once.
+    The expected reply is searched first, then the others in the order of their squares.*/
+
+    private void startPondering(State position) {
+        char opponentColor = (playerColor == 'X') ? 'O' : 'X';
+        long replies = Bitboard.moves(position.getTiles(opponentColor), position.getTiles(playerColor));
+        List<State> boards = new ArrayList<State>();
+        if (replies == 0) {
+            //the opponent has to pass, so this player moves again in the same position
+            boards.add(new State(position.xTiles, position.oTiles));
+        } else {
+            int expected = expectedReply(position, replies);
+            boards.add(afterReply(position, expected, opponentColor));
+            for (long rest = replies & ~(1L << expected); rest != 0; rest &= rest - 1) {
+                boards.add(afterReply(position, Long.numberOfTrailingZeros(rest), opponentColor));
+            }
+        }
+        if (ponderer == null) ponderer = new Gaming(maxDepth, playerColor, table);
+        ponderer.maxDepth = maxDepth;
+        ponderer.score = score;
+        ponderer.symmetricEmpties = symmetricEmpties;
+        ponderer.book = book;
+        ponderer.endgameEmpties = endgameEmpties;
+        ponderer.winLossOnly = winLossOnly;
+        ponderer.probCut = probCut;
+        ponderer.timeBudget = timeBudget;
+        synchronized (pondered) {
+            pondered.clear();
+        }
+        ponderStopped = false;
+        ponderer.clearStop();
+        Gaming searcher = ponderer;
+        ponderThread = new Thread(() -> {
+            for (State board : boards) {
+                if (ponderStopped) break;
+                board.moveGenerator(board, playerColor);
+                if (board.validMoves == 0) continue;
+                long hash = Zobrist.hash(board, playerColor);
+                ponderHash = hash;
+                SearchResult result = searcher.findBestMove(board);
+                if (ponderStopped) break;
+                synchronized (pondered) {
+                    pondered.put(hash, result);
+                    pondered.notifyAll();
+                }
+            }
+            synchronized (pondered) {
+                ponderHash = 0;
+                pondered.notifyAll();
+            }
+        }, "Gaming ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    private static State afterReply(State position, int reply, char opponentColor) {
+        State board = new State(position.xTiles, position.oTiles);
+        board.makeMove(reply, opponentColor);
+        return board;
+    }
+
+    //Returns the reply the last search expects after position: the best move the table has for it, else the first reply.
 
+    private int expectedReply(State position, long replies) {
+        char opponentColor = (playerColor == 'X') ? 'O' : 'X';
+        long entry = table.probe(tableKey(position, Zobrist.hash(position, opponentColor), opponentColor));
+        int move = (entry == 0) ? -1 : fromTable(TranspositionTable.move(entry), keySymmetry);
+        return (move >= 0 && (replies & (1L << move)) != 0) ? move : Long.numberOfTrailingZeros(replies);
     }
 
-    //Initiates the MiniMax algorithm.
-    //We made the assumption that the cpu is always the max.
-    public State MiniMax(State curState) {
-
-        if (playerColor == 'X') {
-            if (curState.validMoves.isEmpty()) {
-                State.endCounter++;
-                return curState;
-            }
-            curState.totalCounter++;
-            return max(curState, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, 'X', 'O');
-        }
-        else {
-            if (curState.validMoves.isEmpty()) {
-                State.endCounter++;
-                return curState;
-            }
-            curState.totalCounter++;
-            return max(curState, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, 'O', 'X');
-        }
-    }
-
-    //The max and min functions are called interchangingly, one after another until a max depth is reached
-    //a,b are the 2 variables used to implement the a-b prooning
-    public State max(State state, int depth, int a, int b, char tileColor, char opponentTileColor) {
-        Random r = new Random();
-
-        /* If MAX is called on a state that is terminal or after a maximum depth is reached,
-         * then a heuristic is calculated on the state and the state is returned.
-         */
-        if ((State.endCounter >= 2) || (depth == maxDepth)) {
-            int stateScore = score.evaluate(state, tileColor, opponentTileColor);
-            state.setScore(stateScore);
-            return state;
-        }
-        //The children-moves of the state are calculated
-        ArrayList<State> children = new ArrayList<State>(state.getChildren(tileColor, opponentTileColor));
-        State maxState = new State(state.tiles);
-        maxState.setScore(Integer.MIN_VALUE);
-        for (State child : children) {
-            //And for each child min is called, on a lower depth
-            State minState = min(child, depth + 1, a, b, opponentTileColor, tileColor);
-            //The child-move with the greatest value is selected and returned by max
-            if (minState.getScore() >= maxState.getScore()) {
-                if ((minState.getScore() == maxState.getScore())) {
-                    //If the heuristic has the same value then we randomly choose one of the two moves
-                    if (r.nextInt(2) == 0) {
-                        maxState.setScore(minState.getScore());
-                        maxState = new State(child.tiles);
-                    }
-                } else {
-                    maxState.setScore(minState.getScore());
-                    maxState = new State(child.tiles);
+    /*Ends the pondering, if any, and returns what it found for curState, or null if it did not search it.
+    If curState is the position being searched right now, that search is waited for. It has a time budget
+    of its own, the same as this object's, so it is never waited for longer than a search of curState would take.*/
+
+    private SearchResult ponderResult(State curState) {
+        if (ponderThread == null) return null;
+        long hash = Zobrist.hash(curState, playerColor);
+        synchronized (pondered) {
+            try {
+                while (!pondered.containsKey(hash) && ponderHash == hash) {
+                    pondered.wait();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            if (maxState.getScore() >= b) return maxState;
-            a = Math.max(a, maxState.getScore());
-        }
-        return maxState;
-    }
-
-    //Min works similarly to max
-    public State min(State state, int depth, int a, int b, char tileColor, char opponentTileColor) {
-        Random r = new Random();
-
-        if ((State.endCounter >= 2) || (depth == maxDepth)) {
-            int stateScore = score.evaluate(state, tileColor, opponentTileColor);
-            state.setScore(stateScore);
-            return state;
-        }
-        ArrayList<State> children = new ArrayList<State>(state.getChildren(tileColor, opponentTileColor));
-        State minState = new State(state.tiles);
-        minState.setScore(Integer.MAX_VALUE);
-        for (State child : children) {
-            State maxState = max(child, depth + 1, a, b, opponentTileColor, tileColor);
-            if (maxState.getScore() <= minState.getScore()) {
-                if ((maxState.getScore() == minState.getScore())) {
-                    if (r.nextInt(2) == 0) {
-                        minState.setScore(maxState.getScore());
-                        minState = new State(child.tiles);
-                    }
-                } else {
-                    minState.setScore(maxState.getScore());
-                    minState = new State(child.tiles);
+        }
+        stopPondering();
+        synchronized (pondered) {
+            return pondered.get(hash);
+        }
+    }
+
+    //Stops the ponder thread, if any, and waits for it to end.
+
+    private void stopPondering() {
+        if (ponderThread == null) return;
+        ponderStopped = true;
+        ponderer.stop();
+        while (ponderThread.isAlive()) {
+            try {
+                ponderThread.join(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        ponderThread = null;
+    }
+
+    //Returns the counters of this object and its helpers, summed: leaves, cutoffs, first move cutoffs, table probes and hits,
+    //and ProbCut cuts.
+
+    private long[] counters() {
+        long[] counters = {leafCount, ordering.getCutoffs(), ordering.getFirstMoveCutoffs(), tableProbes, tableHits,
+                probCutCount};
+        if (helpers != null) {
+            for (Gaming helper : helpers) {
+                counters[0] += helper.leafCount;
+                counters[1] += helper.ordering.getCutoffs();
+                counters[2] += helper.ordering.getFirstMoveCutoffs();
+                counters[3] += helper.tableProbes;
+                counters[4] += helper.tableHits;
+                counters[5] += helper.probCutCount;
+            }
+        }
+        return counters;
+    }
+
+    //Builds the statistics of the move just chosen from the counters at its start, and hands them to the listeners and JFR.
+
+    private void report(SearchStatistics.Source source, int bestMove, long startNodes, long[] startCounters, long startTime,
+                        SearchEvent event) {
+        long[] counters = counters();
+        lastStatistics = new SearchStatistics(source, bestMove, rootScore, lastDepth, getNodeCount() - startNodes,
+                counters[0] - startCounters[0], counters[1] - startCounters[1], counters[2] - startCounters[2],
+                counters[3] - startCounters[3], counters[4] - startCounters[4], counters[5] - startCounters[5],
+                System.nanoTime() - startTime,
+                iterationNodes, iterationNanos);
+        for (SearchListener listener : listeners) {
+            listener.searchFinished(lastStatistics);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source.toString();
+            event.bestMove = State.squareName(bestMove);
+            event.score = rootScore;
+            event.depth = lastDepth;
+            event.nodes = lastStatistics.getNodes();
+            event.leafEvaluations = lastStatistics.getLeafEvaluations();
+            event.cutoffs = lastStatistics.getCutoffs();
+            event.firstMoveCutoffRate = lastStatistics.getFirstMoveCutoffRate();
+            event.tableHitRate = lastStatistics.getTableHitRate();
+            event.effectiveBranchingFactor = lastStatistics.getEffectiveBranchingFactor();
+            event.commit();
+        }
+    }
+
+    /*The iterative deepening loop, starting at firstDepth. start is the System.nanoTime() the move started at.
+    It returns the best move of the deepest iteration that finished and leaves its score in rootScore.*/
+    private int iterate(State board, long hash, long validMoves, int firstDepth, long start) {
+        aborted = false;
+        int bestMove = -1;
+        int bestScore = 0;
+        if (pvLength.length < maxDepth + 1) {
+            pvMoves = new int[maxDepth + 1][maxDepth + 1];
+            pvLength = new int[maxDepth + 1];
+        }
+        for (int depth = firstDepth; depth <= maxDepth && !(stopped && depth > 1); depth++) {
+            depthLimit = depth;
+            horizonReached = false;
+            //depth 1 always finishes, so that there is a move to play however small the budget is
+            deadline = (timeBudget > 0 && depth > 1) ? start + timeBudget * 1000000 : Long.MAX_VALUE;
+            long iterationStart = System.nanoTime();
+            long nodesBefore = nodeCount;
+            IterationEvent event = helper ? null : new IterationEvent();
+            if (event != null) event.begin();
+            int move = aspirationSearch(board, hash, validMoves, bestMove, depth, bestScore);
+            if (aborted) break;
+            bestMove = move;
+            bestScore = rootScore;
+            lastDepth = depth;
+            if (!helper) lastPv = Arrays.copyOf(pvMoves[0], pvLength[0]);
+            if (!helper) iterationFinished(depth, move, nodeCount - nodesBefore, System.nanoTime() - iterationStart, event);
+            //if every line ended before the depth limit, searching deeper gives the same result
+            if (!horizonReached) break;
+            //every iteration takes a few times longer than the one before,
+            //so one is not started if half of the budget is already used
+            if (timeBudget > 0 && (System.nanoTime() - start) * 2 > timeBudget * 1000000) break;
+        }
+        rootScore = bestScore;
+        return bestMove;
+    }
+
+    /*Searches the root for one iteration. From ASPIRATION_DEPTH on, the window is first a narrow one around
+    the score of the previous iteration, since the score rarely moves much from one iteration to the next
+    and a narrow window prunes more. If the score falls outside it the root is searched again,
+    with the window widened on that side, until the score is inside.*/
+    private int aspirationSearch(State board, long hash, long validMoves, int previousBest, int depth, int previousScore) {
+        if (depth < ASPIRATION_DEPTH || previousBest < 0) {
+            return searchRoot(board, hash, validMoves, previousBest, -INFINITY, INFINITY);
+        }
+        long delta = ASPIRATION_WINDOW;
+        int alpha = (int) Math.max(-INFINITY, previousScore - delta);
+        int beta = (int) Math.min(INFINITY, previousScore + delta);
+        while (true) {
+            int move = searchRoot(board, hash, validMoves, previousBest, alpha, beta);
+            if (aborted) return -1;
+            delta *= 4;
+            if (rootScore <= alpha && alpha > -INFINITY) {
+                alpha = (int) Math.max(-INFINITY, rootScore - delta);
+            } else if (rootScore >= beta && beta < INFINITY) {
+                beta = (int) Math.min(INFINITY, rootScore + delta);
+                //the move that failed high is the best one found, so it is searched first again
+                previousBest = move;
+            } else {
+                return move;
+            }
+        }
+    }
+
+    //Records the nodes and the time of an iteration of the main search and tells the listeners and JFR about it.
+
+    private void iterationFinished(int depth, int move, long nodes, long nanos, IterationEvent event) {
+        if (depth < iterationNodes.length) {
+            iterationNodes[depth] = nodes;
+            iterationNanos[depth] = nanos;
+        }
+        for (SearchListener listener : listeners) {
+            listener.iterationFinished(depth, move, rootScore, nodes, nanos);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.depth = depth;
+            event.bestMove = State.squareName(move);
+            event.score = rootScore;
+            event.nodes = nodes;
+            event.commit();
+        }
+    }
+
+    /*Starts the helpers, if any, on their own copies of board. Every second helper starts one depth deeper,
+    so that the helpers do not all search the same iteration at the same time.*/
+    private List<Future<?>> startHelpers(State board, long hash, long validMoves, long start) {
+        List<Future<?>> running = new ArrayList<Future<?>>();
+        if (helpers == null) return running;
+        for (int i = 0; i < helpers.length; i++) {
+            Gaming helper = helpers[i];
+            State helperBoard = new State(board);
+            int firstDepth = Math.min(maxDepth, 1 + (i % 2));
+            helper.stopped = false;
+            helper.ordering.newSearch();
+            helper.timeBudget = timeBudget;
+            running.add(helperPool.submit(() -> helper.iterate(helperBoard, hash, validMoves, firstDepth, start)));
+        }
+        return running;
+    }
+
+    //Stops the helpers and waits for them to return.
+
+    private void stopHelpers(List<Future<?>> running) {
+        if (helpers == null) return;
+        for (Gaming helper : helpers) {
+            helper.stopped = true;
+        }
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A helper search failed", e.getCause());
+            }
+        }
+    }
+
+    /*Searches the root to depthLimit within the window (alpha, beta) and returns its best move. Its score is left in rootScore,
+    or the bound it failed at if no move is inside the window. previousBest is the best move of the previous iteration,
+    searched first. It is -1 if there is none. The other moves are searched as in search, with a null window first.*/
+    private int searchRoot(State board, long hash, long moves, int previousBest, int alpha, int beta) {
+        char opponentColor = (playerColor == 'X') ? 'O' : 'X';
+        int bestMove = -1;
+        int bestScore = -INFINITY;
+        int a = alpha;
+        int count = ordering.order(moves, 0, previousBest, playerColor);
+        int[] list = ordering.moveList(0);
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            long flipped = board.makeMove(move, playerColor);
+            long childHash = Zobrist.afterMove(hash, move, flipped, playerColor);
+            int moveScore;
+            if (i == 0) {
+                moveScore = -search(board, childHash, 1, -beta, -a, opponentColor, playerColor);
+            } else {
+                moveScore = -search(board, childHash, 1, -a - 1, -a, opponentColor, playerColor);
+                if (moveScore > a && moveScore < beta && !aborted) {
+                    moveScore = -search(board, childHash, 1, -beta, -a, opponentColor, playerColor);
+                }
+            }
+            board.undoMove(move, flipped, playerColor);
+            if (aborted) return -1;
+            //The move with the greatest value is selected.
+            //If the heuristic has the same value then we randomly choose one of the two moves
+            if (moveScore > bestScore || (moveScore == bestScore && r.nextInt(2) == 0)) {
+                bestScore = moveScore;
+                bestMove = move;
+                updatePv(0, move);
+            }
+            if (bestScore >= beta) break;
+            //a is kept one below the best score, so that a move as good as the best one
+            //gets its exact score and the random choice between equal moves stays fair
+            a = Math.max(a, bestScore - 1);
+        }
+        long key = tableKey(board, hash, playerColor);
+        table.store(key, depthLimit, bound(bestScore, alpha, beta), bestScore, toTable(bestMove, keySymmetry));
+        rootScore = bestScore;
+        return bestMove;
+    }
+
+    //Counts a visited node and, every 1024 nodes, checks if the deadline has passed.
+    //A helper also stops as soon as the search it is helping is over, and the main search when stop is called
+    //after its first iteration.
+
+    private boolean outOfTime() {
+        nodeCount++;
+        if (((nodeCount & 1023) == 0 && System.nanoTime() > deadline) || (stopped && depthLimit > 1)) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    /*The search of every node below the root, in the negamax form: it returns the score of the state from the side
+    of tileColor, the player to move, so the score of a move is minus the score of the state after it, and the
+    same code searches the cpu's moves and the opponent's. (a, b) is the window: a score at or below a or at or above b
+    is only a bound, since the search stops as soon as it knows the score is outside the window.
+    It is a principal variation search: the first move, the one most likely to be best, is searched with the whole window,
+    and every other one with a null window (a, a + 1), which only tells if the move is better than a, and prunes far more.
+    Only a move that turns out better is searched again with the whole window to get its score.
+    Every move is played on the state itself and taken back after it is searched, so nothing is allocated.
+    hash is the Zobrist hash of the state with tileColor to move. It is used to look the state up
+    in the transposition table, so a position reached again through other moves is not searched twice.
+    In the opening the table is keyed by the canonical form of the state instead, see tableKey.
+    When the deadline passes it returns 0 at once, and nothing is stored in the table.*/
+    private int search(State state, long hash, int depth, int a, int b, char tileColor, char opponentTileColor) {
+        pvLength[depth] = 0;
+        if (outOfTime()) return 0;
+
+        //At the depth limit the state is scored by the evaluator.
+        if (depth == depthLimit) {
+            horizonReached = true;
+            leafCount++;
+            return evaluate(state, tileColor);
+        }
+        long moves = Bitboard.moves(state.getTiles(tileColor), state.getTiles(opponentTileColor));
+        if (moves == 0) {
+            //If neither player can move the game is over and scored by its result, else the player passes.
+            if (Bitboard.moves(state.getTiles(opponentTileColor), state.getTiles(tileColor)) == 0) {
+                return (tileColor == playerColor) ? terminalScore(state) : -terminalScore(state);
+            }
+            int value = -search(state, Zobrist.afterPass(hash), depth + 1, -b, -a, opponentTileColor, tileColor);
+            updatePv(depth, SearchResult.PASS);
+            return value;
+        }
+        //The lower end of the window the state was called with, needed to know what kind of bound the result is
+        int alpha = a;
+        int bestMove = -1;
+        long key = tableKey(state, hash, tileColor);
+        int symmetry = keySymmetry;
+        long entry = table.probe(key);
+        tableProbes++;
+        if (entry != 0) {
+            tableHits++;
+            bestMove = fromTable(TranspositionTable.move(entry), symmetry);
+            if (TranspositionTable.depth(entry) >= depthLimit - depth) {
+                int tableScore = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && tableScore >= b)
+                        || (bound == TranspositionTable.UPPER && tableScore <= a)) {
+                    //the stored score may come from a search reaching the depth limit, so a deeper one may still change it
+                    horizonReached = true;
+                    return tableScore;
+                }
+            }
+        }
+        if (probCut != null) {
+            int cut = probCut(state, hash, depth, a, b, tileColor, opponentTileColor);
+            if (cut != NO_CUT) return cut;
+            //the shallow searches were at this depth too, so their line is not this node's
+            pvLength[depth] = 0;
+        }
+        int bestScore = -INFINITY;
+        //The moves are searched in the order MoveOrdering puts them in, the best move stored in the table first
+        int count = ordering.order(moves, depth, bestMove, tileColor);
+        int[] list = ordering.moveList(depth);
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            long flipped = state.makeMove(move, tileColor);
+            long childHash = Zobrist.afterMove(hash, move, flipped, tileColor);
+            int value;
+            if (i == 0) {
+                value = -search(state, childHash, depth + 1, -b, -a, opponentTileColor, tileColor);
+            } else {
+                value = -search(state, childHash, depth + 1, -a - 1, -a, opponentTileColor, tileColor);
+                if (value > a && value < b && !aborted) {
+                    value = -search(state, childHash, depth + 1, -b, -a, opponentTileColor, tileColor);
+                }
+            }
+            state.undoMove(move, flipped, tileColor);
+            if (aborted) return 0;
+            if (value > bestScore) {
+                bestScore = value;
+                bestMove = move;
+                //only a score inside the window is exact, and so is the line below it
+                if (value > a && value < b) updatePv(depth, move);
+            }
+            if (bestScore >= b) {
+                ordering.cutoff(move, depth, depthLimit - depth, i, tileColor);
+                break;
+            }
+            a = Math.max(a, bestScore);
+        }
+        if (!probing) table.store(key, depthLimit - depth, bound(bestScore, alpha, b), bestScore, toTable(bestMove, symmetry));
+        return bestScore;
+    }
+
+    //Makes the principal variation of the node at depth its move followed by the line of the node after it.
+
+    private void updatePv(int depth, int move) {
+        int[] line = pvMoves[depth];
+        line[0] = move;
+        System.arraycopy(pvMoves[depth + 1], 0, line, 1, pvLength[depth + 1]);
+        pvLength[depth] = pvLength[depth + 1] + 1;
+    }
+
+    //The evaluator's score of the state from the side of tileColor. The evaluator is always asked from the cpu's side,
+    //since the Heuristic is not symmetric, and the score is turned around for the opponent.
+
+    private int evaluate(State state, char tileColor) {
+        char opponentColor = (playerColor == 'X') ? 'O' : 'X';
+        int value = score.evaluate(state, playerColor, opponentColor);
+        return (tileColor == playerColor) ? value : -value;
+    }
+
+    /*Multi-ProbCut: searches the state shallow with a null window just past the score that would make the deep
+    search end at or above b, and the same below a, the scores being the ones predicted by probCut's line.
+    Returns b or a if the deep search would almost surely end there, else NO_CUT.
+    The shallow searches read the table but store nothing in it, see probing.
+    The lines are from the side of the player to move, as the scores of search are.*/
+
+    private int probCut(State state, long hash, int depth, int a, int b, char tileColor, char opponentTileColor) {
+        int remaining = depthLimit - depth;
+        int empties = Long.bitCount(state.getEmpty());
+        int shallow = probCut.shallowDepth(empties, remaining);
+        if (shallow == 0) return NO_CUT;
+        double slope = probCut.slope(empties, remaining);
+        double intercept = probCut.intercept(empties, remaining);
+        double margin = probCut.margin(empties, remaining);
+        int savedLimit = depthLimit;
+        boolean savedProbing = probing;
+        //no cuts near won or lost scores, which are not on any line
+        if (b < WIN_SCORE / 2) {
+            double bound = Math.ceil((b - intercept + margin) / slope);
+            if (bound < WIN_SCORE / 2) {
+                int high = (int) bound;
+                depthLimit = depth + shallow;
+                probing = true;
+                int value = search(state, hash, depth, high - 1, high, tileColor, opponentTileColor);
+                depthLimit = savedLimit;
+                probing = savedProbing;
+                if (aborted) return 0;
+                if (value >= high) {
+                    probCutCount++;
+                    return b;
                 }
             }
-            if (minState.getScore() <= a) return minState;
-            b = Math.min(b, minState.getScore());
         }
-        return minState;
+        if (a > -WIN_SCORE / 2) {
+            double bound = Math.floor((a - intercept - margin) / slope);
+            if (bound > -WIN_SCORE / 2) {
+                int low = (int) bound;
+                depthLimit = depth + shallow;
+                probing = true;
+                int value = search(state, hash, depth, low, low + 1, tileColor, opponentTileColor);
+                depthLimit = savedLimit;
+                probing = savedProbing;
+                if (aborted) return 0;
+                if (value <= low) {
+                    probCutCount++;
+                    return a;
+                }
+            }
+        }
+        return NO_CUT;
+    }
+
+    /*Returns the key the state is stored in the table under, with tileColor to move. hash is its Zobrist hash,
+    which is the key unless the state has at least symmetricEmpties empty cells and the evaluator is symmetric.
+    Then it is the hash of its canonical form, and the symmetry that turns the state into it is left in keySymmetry,
+    else keySymmetry is 0. A symmetric copy scored differently would get the score of another copy from the table.*/
+
+    private long tableKey(State state, long hash, char tileColor) {
+        keySymmetry = 0;
+        if (Long.bitCount(state.getEmpty()) < symmetricEmpties || !score.isSymmetric()) return hash;
+        keySymmetry = Symmetry.canonical(state.xTiles, state.oTiles);
+        return Symmetry.hash(Symmetry.transform(state.xTiles, keySymmetry), Symmetry.transform(state.oTiles, keySymmetry), tileColor);
+    }
+
+    //Turns a move of the state into the move of its canonical form stored in the table, and back. -1 stays -1.
+
+    private static int toTable(int move, int symmetry) {
+        return (move < 0 || symmetry == 0) ? move : Symmetry.square(move, symmetry);
+    }
+
+    private static int fromTable(int move, int symmetry) {
+        return (move < 0 || symmetry == 0) ? move : Symmetry.square(move, Symmetry.INVERSE[symmetry]);
+    }
+
+    //The score of a finished game from the cpu's side.
+
+    private int terminalScore(State state) {
+        char opponentColor = (playerColor == 'X') ? 'O' : 'X';
+        return finalScore(EndgameSolver.finalDifference(state.getTiles(playerColor), state.getTiles(opponentColor)));
+    }
+
+    //Turns a final disc difference into a score, WIN_SCORE plus the difference for a win, minus for a loss.
+
+    private static int finalScore(int discDifference) {
+        if (discDifference > 0) return WIN_SCORE + discDifference;
+        if (discDifference < 0) return -WIN_SCORE + discDifference;
+        return 0;
+    }
+
+    //The kind of bound a score is, given the window it was searched with.
+
+    private static int bound(int score, int alpha, int beta) {
+        if (score >= beta) return TranspositionTable.LOWER;
+        if (score <= alpha) return TranspositionTable.UPPER;
+        return TranspositionTable.EXACT;
     }
 }
\ No newline at end of file
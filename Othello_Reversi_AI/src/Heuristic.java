@@ -1,5 +1,27 @@
-
-public class Heuristic {
+/*The heuristics work on the two bitboards of the State. Every region of the board a heuristic looks at
+is a mask computed once, so counting the player's tiles in it is a single AND and popcount,
+and a whole evaluation costs a few dozen instructions instead of scanning the board again for every heuristic.
+The ratios are compared by cross multiplying, a/b < 0.35 being checked as 100*a < 35*b,
+so they are exact and need no division.*/
+
+public class Heuristic implements Evaluator {
+
+    //The 4 corners
+    static final long CORNERS = 0x8100000000000081L;
+    //The big center square, rows and columns 2 to 5
+    static final long CENTER = 0x00003C3C3C3C0000L;
+    //The cells of the perimeter that are not corners or next to one: columns 0 and 7 of rows 2 to 5,
+    //and rows 0 and 7 of columns 2 to 5
+    static final long PERIMETER = 0x3C0081818181003CL;
+    //The cells of the 2nd outer square that are not next to a corner: columns 1 and 6 of rows 2 to 5,
+    //and rows 1 and 6 of columns 2 to 5
+    static final long DANGEROUS = 0x003C424242423C00L;
+    //Every corner and, in the same order, the 3 cells surrounding it
+    static final long[] CORNER_CELLS = {1L, 1L << 7, 1L << 56, 1L << 63};
+    static final long[] CORNER_NEIGHBORS = {0x0000000000000302L, 0x000000000000C040L, 0x0203000000000000L, 0x40C0000000000000L};
+    //The first and the last row, and the first and the last column
+    static final long EDGE_ROWS = 0xFF000000000000FFL;
+    static final long EDGE_COLUMNS = Bitboard.COLUMN_A | Bitboard.COLUMN_H;
 
     /*Method which calls all the heuristics and assigns a score to a State. The score from each individual heuristic
     is weighted in order to play certain moves with a better chance.
@@ -7,38 +29,33 @@ public class Heuristic {
     is considered a better move and it usually should be played*/
 
     public int evaluate(State currentState, char tileColor, char opponentTileColor) {
+        long player = currentState.getTiles(tileColor);
+        long opponent = currentState.getTiles(opponentTileColor);
 
         //holds the number of tiles with the player's tile color
-        int comTilesCounter1 = currentState.comTotalTiles(currentState, tileColor, 0, State.dimension, 1, 0, State.dimension, 1);
-        //holds the number of tiles with the opponent's tile color
-        int comTilesCounter2 = currentState.comTotalTiles(currentState, opponentTileColor, 0, State.dimension, 1, 0, State.dimension, 1);
+        int comTilesCounter1 = Long.bitCount(player);
         //holds the number of all the tiles in a State
-        int totalCounter = (comTilesCounter1 + comTilesCounter2);
+        int totalCounter = Long.bitCount(player | opponent);
 
-        int score = 50 * cornerHeuristic(currentState, tileColor) + 3 * gamePhaseHeuristic(comTilesCounter1, totalCounter) +
-                7 * centerSquareHeuristic(currentState, tileColor, totalCounter) + 25 * cornerNeighborsHeuristic(currentState, tileColor, opponentTileColor) +
-                5 * dangerousSquareHeuristic(currentState, tileColor, totalCounter) + 5 * perimeterHeuristic(currentState, tileColor, totalCounter);
+        int score = 50 * cornerHeuristic(player) + 3 * gamePhaseHeuristic(comTilesCounter1, totalCounter) +
+                7 * centerSquareHeuristic(player, totalCounter) + 25 * cornerNeighborsHeuristic(player, opponent) +
+                5 * dangerousSquareHeuristic(player, totalCounter) + 5 * perimeterHeuristic(player, totalCounter) +
+                10 * mobilityHeuristic(player, opponent) + 4 * potentialMobilityHeuristic(player, opponent) +
+                10 * stabilityHeuristic(player, opponent);
         return score;
     }
 
+    //Every mask is symmetric and every heuristic is the same along the rows as along the columns, see HeuristicTest.
+
+    public boolean isSymmetric() {
+        return true;
+    }
+
 
     //The heuristic to see if the State has the player's tile in a corner
 
-    private int cornerHeuristic(State currentState, char tileColor) {
-        int sum = 0;
-        if (currentState.tiles[0][0] == tileColor) {
-            sum += 4;
-        }
-        if (currentState.tiles[0][7] == tileColor) {
-            sum += 4;
-        }
-        if (currentState.tiles[7][0] == tileColor) {
-            sum += 4;
-        }
-        if (currentState.tiles[7][7] == tileColor) {
-            sum += 4;
-        }
-        return sum;
+    private int cornerHeuristic(long player) {
+        return 4 * Long.bitCount(player & CORNERS);
     }
 
 
@@ -49,14 +66,15 @@ public class Heuristic {
 
 
     private int gamePhaseHeuristic(int comTilesCounter1, int totalCounter) {
+        int percent = 100 * comTilesCounter1;
 
-        if (totalCounter < 25 && comTilesCounter1 / totalCounter < 0.35)
+        if (totalCounter < 25 && percent < 35 * totalCounter)
             return 1;
-        else if (totalCounter > 24 && totalCounter < 45 && comTilesCounter1 / totalCounter < 0.4)
+        else if (totalCounter > 24 && totalCounter < 45 && percent < 40 * totalCounter)
             return 2;
-        else if (totalCounter > 44 && totalCounter < 55 && comTilesCounter1 / totalCounter < 0.5 && comTilesCounter1 / totalCounter > 0.35)
+        else if (totalCounter > 44 && totalCounter < 55 && percent < 50 * totalCounter && percent > 35 * totalCounter)
             return 2;
-        else if (totalCounter > 54 && comTilesCounter1 / totalCounter > 0.5) return 3;
+        else if (totalCounter > 54 && percent > 50 * totalCounter) return 3;
         else return 0;
     }
 
@@ -65,11 +83,11 @@ public class Heuristic {
     Staying in the middle area is considered a good strategy in early game,
     where early game is less than 35 tiles played.*/
 
-    private int centerSquareHeuristic(State currentState, char tileColor, int totalCounter) {
+    private int centerSquareHeuristic(long player, int totalCounter) {
         //holds the number of tiles in the center square
-        int centerCounter = currentState.comTotalTiles(currentState, tileColor, 2, 6, 1, 2, 6, 1);
+        int centerCounter = 100 * Long.bitCount(player & CENTER);
         if (totalCounter > 4 && totalCounter < 35) {
-            if (centerCounter / totalCounter > 0.17 && centerCounter / totalCounter < 0.26) return 2;
+            if (centerCounter > 17 * totalCounter && centerCounter < 26 * totalCounter) return 2;
         }
         return 0;
     }
@@ -77,12 +95,10 @@ public class Heuristic {
     /*Playing in the perimeter of the board is considered a good move,
     so the score of the State is dependent on if the player's move is on the perimeter.*/
 
-    private int perimeterHeuristic(State currentState, char tileColor, int totalCounter) {
-        int comTilesCounterHorizontal = currentState.comTotalTiles(currentState, tileColor, 2, 6, 1, 0, 8, 7);
-        int comTilesCounterVertical = currentState.comTotalTiles(currentState, tileColor, 0, 8, 7, 2, 6, 1);
-        int totalPerimeter = comTilesCounterHorizontal + comTilesCounterVertical;
+    private int perimeterHeuristic(long player, int totalCounter) {
+        int totalPerimeter = 100 * Long.bitCount(player & PERIMETER);
 
-        if (totalCounter > 34 && totalPerimeter / totalCounter > 0.35) return 2;
+        if (totalCounter > 34 && totalPerimeter > 35 * totalCounter) return 2;
         return 0;
     }
 
@@ -91,57 +107,83 @@ public class Heuristic {
     Playing there is considered dangerous as it many times enables the opponent
     to play in the perimeter or in a corner.*/
 
-    private int dangerousSquareHeuristic(State currentState, char tileColor, int totalCounter) {
-        int comTilesCounterHorizontal = currentState.comTotalTiles(currentState, tileColor, 2, 6, 1, 1, 7, 5);
-        int comTilesCounterVertical = currentState.comTotalTiles(currentState, tileColor, 1, 7, 5, 2, 6, 1);
-        int totalPerimeter = comTilesCounterHorizontal + comTilesCounterVertical;
+    private int dangerousSquareHeuristic(long player, int totalCounter) {
+        int totalPerimeter = 100 * Long.bitCount(player & DANGEROUS);
 
-        if (totalCounter < 40 && totalPerimeter / totalCounter < 0.3) return 1;
+        if (totalCounter < 40 && totalPerimeter < 30 * totalCounter) return 1;
         return 0;
     }
 
     /*The corner neighbors are the 3 tiles surrounding a corner.
-    Playing there is considered a bad move as it often enables the opponent to take a corner.*/
+    Playing there is considered a bad move as it often enables the opponent to take a corner.
+    Having one when the opponent already holds the corner does no harm, so it counts as a good thing then.*/
 
-    private int cornerNeighborsHeuristic(State currentState, char tileColor, char opponentTileColor) {
+    private int cornerNeighborsHeuristic(long player, long opponent) {
         int sum = 0;
-        if (currentState.tiles[0][0] == opponentTileColor) {
-            if (currentState.tiles[0][1] == tileColor || currentState.tiles[1][0] == tileColor || currentState.tiles[1][1] == tileColor) {
-                sum++;
-            }
-        } else if (currentState.tiles[0][0] == 0) {
-            if (currentState.tiles[0][1] == tileColor || currentState.tiles[1][0] == tileColor || currentState.tiles[1][1] == tileColor) {
-                sum--;
-            }
-        }
-        if (currentState.tiles[0][7] == opponentTileColor) {
-            if (currentState.tiles[0][6] == tileColor || currentState.tiles[1][6] == tileColor || currentState.tiles[1][7] == tileColor) {
+        for (int corner = 0; corner < 4; corner++) {
+            if ((player & CORNER_NEIGHBORS[corner]) == 0) continue;
+            if ((opponent & CORNER_CELLS[corner]) != 0) {
                 sum++;
-            }
-        } else if (currentState.tiles[0][7] == 0) {
-            if (currentState.tiles[0][6] == tileColor || currentState.tiles[1][6] == tileColor || currentState.tiles[1][7] == tileColor) {
-                sum--;
-            }
-        }
-        if (currentState.tiles[7][0] == opponentTileColor) {
-            if (currentState.tiles[6][0] == tileColor || currentState.tiles[6][1] == tileColor || currentState.tiles[7][1] == tileColor) {
-                sum++;
-            }
-        } else if (currentState.tiles[7][0] == 0) {
-            if (currentState.tiles[6][0] == tileColor || currentState.tiles[6][1] == tileColor || currentState.tiles[7][1] == tileColor) {
-                sum--;
-            }
-        }
-        if (currentState.tiles[7][7] == opponentTileColor) {
-            if (currentState.tiles[7][6] == tileColor || currentState.tiles[6][7] == tileColor || currentState.tiles[6][6] == tileColor) {
-                sum++;
-            }
-        } else if (currentState.tiles[7][7] == 0) {
-            if (currentState.tiles[7][6] == tileColor || currentState.tiles[6][7] == tileColor || currentState.tiles[6][6] == tileColor) {
+            } else if ((player & CORNER_CELLS[corner]) == 0) {
                 sum--;
             }
         }
         return sum;
     }
 
+    /*Mobility is the number of valid moves a player has. Having more moves than the opponent
+    leaves more good choices for the player and fewer for the opponent, so the difference of the two is the score.*/
+
+    private int mobilityHeuristic(long player, long opponent) {
+        return Long.bitCount(Bitboard.moves(player, opponent)) - Long.bitCount(Bitboard.moves(opponent, player));
+    }
+
+    /*Potential mobility. The empty cells next to the opponent's tiles are where the player may get moves later,
+    and the empty cells next to the player's own tiles, his frontier, are where the opponent may.
+    Fewer frontier tiles usually means more moves a few plies later.*/
+
+    private int potentialMobilityHeuristic(long player, long opponent) {
+        long empty = ~(player | opponent);
+        return Long.bitCount(Bitboard.neighbours(opponent) & empty) - Long.bitCount(Bitboard.neighbours(player) & empty);
+    }
+
+    //Stable tiles can never be flipped again, so they count for the final score for sure.
+
+    private int stabilityHeuristic(long player, long opponent) {
+        return Long.bitCount(stableTiles(player)) - Long.bitCount(stableTiles(opponent));
+    }
+
+    /*Returns the tiles that are stable for sure. Only the simplest ones are found: the corners, and the tiles
+    on an edge connected to a corner by an unbroken line of tiles of the same color along that edge.
+    The lines are filled from the corners in the 4 directions along the edges, each fill doubling
+    its reach at every step, so there is no loop that depends on the board.*/
+
+    static long stableTiles(long tiles) {
+        long corners = tiles & CORNERS;
+        long rows = tiles & EDGE_ROWS;
+        long columns = tiles & EDGE_COLUMNS;
+        return fill(corners, rows & ~Bitboard.COLUMN_A, 1) | fillBack(corners, rows & ~Bitboard.COLUMN_H, 1)
+                | fill(corners, columns, 8) | fillBack(corners, columns, 8);
+    }
+
+    //Grows start through the cells of path, shift bits at a time towards higher bits, for as long as path is unbroken.
+
+    private static long fill(long start, long path, int shift) {
+        start |= path & (start << shift);
+        path &= path << shift;
+        start |= path & (start << (2 * shift));
+        path &= path << (2 * shift);
+        return start | (path & (start << (4 * shift)));
+    }
+
+    //Same as fill, towards lower bits.
+
+    private static long fillBack(long start, long path, int shift) {
+        start |= path & (start >>> shift);
+        path &= path >>> shift;
+        start |= path & (start >>> (2 * shift));
+        path &= path >>> (2 * shift);
+        return start | (path & (start >>> (4 * shift)));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*A Java Flight Recorder event for every iteration of the iterative deepening that finishes.
+Its duration is the time of the iteration, so a recording shows how long every depth takes.*/
+
+@Name("othello.Iteration")
+@Label("Iteration")
+@Category("Othello")
+@Description("One finished iteration of a Gaming object's iterative deepening")
+public class IterationEvent extends Event {
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Score")
+    int score;
+
+    @Label("Nodes")
+    long nodes;
+}
@@ -1,9 +1,23 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import javax.management.JMException;
 
 
 
 public class Main {
 
+    //The weights file written by PatternTrainer that the cpu player uses, if it exists
+    static final String PATTERN_WEIGHTS = "patterns.bin";
+    //The opening book written by OpeningBookBuilder that the cpu player plays from, if it exists
+    static final String OPENING_BOOK = "book.bin";
+    //The ProbCutCalibrator calibration the cpu player prunes with, if it exists. It must fit the evaluator in use
+    static final String PROBCUT_CALIBRATION = "probcut.txt";
+    //Every game played is appended to this GameRecordFile when it is over
+    static final String GAME_RECORDS = "games.rec";
+
     /*We made the assumption that the Black tiles, in our case the Xs, are always playing 1st.
     The white tiles are the Os
     We store both as char variables.
@@ -55,6 +69,44 @@ public class Main {
 
         //A Gaming object is created
         Gaming gaming = new Gaming(depth, cpuColor);
+        //If trained pattern weights are found next to the game, they are used instead of the Heuristic
+        Path weights = Paths.get(PATTERN_WEIGHTS);
+        if (Files.exists(weights)) {
+            try {
+                gaming.setEvaluator(new PatternEvaluator(weights));
+                System.out.println("Using the pattern weights of " + weights);
+            } catch (IOException e) {
+                System.out.println("Could not load " + weights + ", using the Heuristic: " + e.getMessage());
+            }
+        }
+        Path book = Paths.get(OPENING_BOOK);
+        if (Files.exists(book)) {
+            try {
+                gaming.setOpeningBook(new OpeningBook(book));
+                System.out.println("Using the opening book " + book);
+            } catch (IOException e) {
+                System.out.println("Could not load " + book + ", searching every move: " + e.getMessage());
+            }
+        }
+        Path calibration = Paths.get(PROBCUT_CALIBRATION);
+        if (Files.exists(calibration)) {
+            try {
+                gaming.setProbCut(new ProbCut(calibration));
+                System.out.println("Pruning with the ProbCut calibration " + calibration);
+            } catch (IOException e) {
+                System.out.println("Could not load " + calibration + ", searching without ProbCut: " + e.getMessage());
+            }
+        }
+        //The cpu goes on searching while the user thinks about his move
+        gaming.setPondering(true);
+        //The cpu's searches can be watched with jconsole, under othello:type=Search
+        SearchMonitor monitor = new SearchMonitor();
+        gaming.addSearchListener(monitor);
+        try {
+            monitor.register("cpu");
+        } catch (JMException e) {
+            System.out.println("Could not register the search monitor: " + e.getMessage());
+        }
         //hold the number of X and O tiles in the current State.
         int oTiles, xTiles;
         //calculates the available moves of the one playing 1st
@@ -62,11 +114,15 @@ public class Main {
         //prints the table
         currentState.printState(currentState);
         //Holds how many Xs are in the board
-        xTiles = currentState.comTotalTiles(currentState, 'X', 0, 8, 1, 0, 8, 1);
+        xTiles = currentState.countTiles('X');
         //Holds how many Os are in the board
-        oTiles = currentState.comTotalTiles(currentState, 'O', 0, 8, 1, 0, 8, 1);
-        State.totalCounter = xTiles + oTiles;
+        oTiles = currentState.countTiles('O');
+        currentState.totalCounter = xTiles + oTiles;
         System.out.println("X Tiles: " + xTiles + " || O Tiles: " + oTiles);
+        //The squares played so far, passes left out, to save the game when it is over
+        byte[] moves = new byte[64];
+        int moveCount = 0;
+        int move;
 
         /*Depending on the user's selection above, the main functionality needs to be adjusted somewhat differently.
         There are 2 while loops below with around the same lines of code,
@@ -75,56 +131,71 @@ public class Main {
 
         if (userColor == 'X') {
             //Here the user plays 1st
-            while (State.endCounter < 2) {
+            while (currentState.endCounter < 2) {
                 //Scan the user's input/move
-                currentState.scanning(currentState, userColor, cpuColor);
+                move = currentState.scanning(currentState, userColor, cpuColor);
+                if (move >= 0) moves[moveCount++] = (byte) move;
                 //calculate the opponent's available moves
                 currentState.moveGenerator(currentState, cpuColor);
                 currentState.printState(currentState);
-                xTiles = currentState.comTotalTiles(currentState, userColor, 0, 8, 1, 0, 8, 1);
-                System.out.println("X Tiles: " + xTiles + " || O Tiles: " + (State.totalCounter - xTiles));
+                xTiles = currentState.countTiles(userColor);
+                System.out.println("X Tiles: " + xTiles + " || O Tiles: " + (currentState.totalCounter - xTiles));
                 //The pc plays here, so we initiate the Minimax algorithm
-                currentState = new State(gaming.MiniMax(currentState).tiles);
+                currentState = new State(gaming.MiniMax(currentState));
+                //Tell the user which square the cpu played, and the line it expects
+                System.out.println("CPU: " + gaming.getLastResult());
+                if (!gaming.getLastResult().isPass()) moves[moveCount++] = (byte) gaming.getLastResult().getBestMove();
                 //clear the user's valid Moves from the previous round. They were previously stored but we don't need them anymore.
-                currentState.validMoves.clear();
+                currentState.validMoves = 0;
                 //calculate the new user's available moves
                 currentState.moveGenerator(currentState, userColor);
                 currentState.printState(currentState);
-                xTiles = currentState.comTotalTiles(currentState, userColor, 0, 8, 1, 0, 8, 1);
-                System.out.println("X Tiles: " + xTiles + " || O Tiles: " + (State.totalCounter - xTiles));
+                xTiles = currentState.countTiles(userColor);
+                System.out.println("X Tiles: " + xTiles + " || O Tiles: " + (currentState.totalCounter - xTiles));
             }
         } else {
             //Here the pc plays 1st, so we initiate the Minimax algorithm 1st before scanning for the user's input/move
-            while (State.endCounter < 2) {
-                currentState = new State(gaming.MiniMax(currentState).tiles);
-                currentState.validMoves.clear();
+            while (currentState.endCounter < 2) {
+                currentState = new State(gaming.MiniMax(currentState));
+                System.out.println("CPU: " + gaming.getLastResult());
+                if (!gaming.getLastResult().isPass()) moves[moveCount++] = (byte) gaming.getLastResult().getBestMove();
+                currentState.validMoves = 0;
                 currentState.moveGenerator(currentState, userColor);
                 currentState.printState(currentState);
-                xTiles = currentState.comTotalTiles(currentState, 'X', 0, 8, 1, 0, 8, 1);
-                System.out.println("X Tiles: " + xTiles + " || O Tiles: " + (State.totalCounter - xTiles));
-                currentState.scanning(currentState, userColor, cpuColor);
+                xTiles = currentState.countTiles('X');
+                System.out.println("X Tiles: " + xTiles + " || O Tiles: " + (currentState.totalCounter - xTiles));
+                move = currentState.scanning(currentState, userColor, cpuColor);
+                if (move >= 0) moves[moveCount++] = (byte) move;
                 currentState.moveGenerator(currentState, cpuColor);
                 currentState.printState(currentState);
-                xTiles = currentState.comTotalTiles(currentState, 'X', 0, 8, 1, 0, 8, 1);
-                System.out.println("X Tiles: " + xTiles + " || O Tiles: " + (State.totalCounter - xTiles));
+                xTiles = currentState.countTiles('X');
+                System.out.println("X Tiles: " + xTiles + " || O Tiles: " + (currentState.totalCounter - xTiles));
             }
         }
         System.out.println("\nGame is over!");
-        xTiles = currentState.comTotalTiles(currentState, 'X', 0, 8, 1, 0, 8, 1);
+        xTiles = currentState.countTiles('X');
         System.out.print("Final Score: ");
         //If the game ended before the board is full,
         //the winning player gets the rest of the "unplayed" spots on his side,
         //so that the total score is always going to add up to 64.
-        if (xTiles > (State.totalCounter - xTiles)) {
-            System.out.println("X Tiles: " + (64 - State.totalCounter + xTiles) + " || O Tiles: " + (State.totalCounter - xTiles));
+        if (xTiles > (currentState.totalCounter - xTiles)) {
+            System.out.println("X Tiles: " + (64 - currentState.totalCounter + xTiles) + " || O Tiles: " + (currentState.totalCounter - xTiles));
             System.out.println("X PLAYER WON");
-        } else if (xTiles < (State.totalCounter - xTiles)) {
+        } else if (xTiles < (currentState.totalCounter - xTiles)) {
             System.out.println("X Tiles: " + xTiles + " || O Tiles: " + (64 - xTiles));
             System.out.println("O PLAYER WON");
         } else {
             System.out.println("X Tiles: 32 || O Tiles: 32");
             System.out.println("MATCH ENDED AS A DRAW");
         }
+        //The game is saved, to be replayed later by GameRecordFile
+        Path records = Paths.get(GAME_RECORDS);
+        try (GameRecordWriter writer = new GameRecordWriter(records)) {
+            writer.write(moves, moveCount, cpuColor == 'X' ? GameRecordFile.X_ENGINE : GameRecordFile.O_ENGINE);
+            System.out.println("The game was saved as game " + (writer.size() - 1) + " of " + records);
+        } catch (IOException e) {
+            System.out.println("Could not save the game to " + records + ": " + e.getMessage());
+        }
     }
 
 }
@@ -0,0 +1,188 @@
+/*Decides in which order the search tries the moves of a state. Alpha-beta prunes the most
+when the best move is searched first, so the moves most likely to be good are put in front:
+1. the best move the transposition table remembers for the state,
+2. the killer moves, the last two moves that caused a cutoff at the same depth,
+3. the rest, by their history score (how often and how deep they caused cutoffs before)
+   plus a fixed value for the square itself (corners are good, the cells next to them are bad).
+Every heuristic can be turned off on its own, to compare how much each one prunes.
+The counters at the bottom tell how well the ordering works: the more cutoffs happen on the first move, the better.
+One MoveOrdering is used by one thread at a time: it belongs to one Gaming object, or to several
+that never search at the same time, see Gaming.setMoveOrdering.*/
+
+public class MoveOrdering {
+
+    //The most plies a search can reach, passes included
+    static final int MAX_PLY = 128;
+
+    //The value of every square when nothing else is known about a move
+    static final int[] SQUARE_VALUES = {
+            100, -20, 10, 5, 5, 10, -20, 100,
+            -20, -50, -2, -2, -2, -2, -50, -20,
+            10, -2, -1, -1, -1, -1, -2, 10,
+            5, -2, -1, -1, -1, -1, -2, 5,
+            5, -2, -1, -1, -1, -1, -2, 5,
+            10, -2, -1, -1, -1, -1, -2, 10,
+            -20, -50, -2, -2, -2, -2, -50, -20,
+            100, -20, 10, 5, 5, 10, -20, 100
+    };
+
+    private static final int TABLE_MOVE_KEY = 1 << 30;
+    private static final int KILLER_KEY = 1 << 28;
+    //When a history score gets above this, all of them are halved
+    private static final int HISTORY_LIMIT = 1 << 24;
+
+    private boolean squareOrdering = true;
+    private boolean killerMoves = true;
+    private boolean historyHeuristic = true;
+    private boolean tableMoveFirst = true;
+
+    //The two killer moves of every ply, -1 if there is none
+    private final int[][] killers = new int[MAX_PLY][2];
+    //The history score of every square, for X (0) and O (1)
+    private final int[][] history = new int[2][64];
+    //The move list and the sort keys of every ply, allocated once so that ordering creates no garbage
+    private final int[][] moveLists = new int[MAX_PLY][64];
+    private final int[][] keys = new int[MAX_PLY][64];
+
+    //The nodes whose moves were ordered and searched
+    private long orderedNodes;
+    //The nodes that were cut off, and how many of them on their first move
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    public MoveOrdering() {
+        clearKillers();
+    }
+
+    //Creates a MoveOrdering with the same heuristics turned on as settings, but empty tables and counters.
+
+    public MoveOrdering(MoveOrdering settings) {
+        this();
+        squareOrdering = settings.squareOrdering;
+        killerMoves = settings.killerMoves;
+        historyHeuristic = settings.historyHeuristic;
+        tableMoveFirst = settings.tableMoveFirst;
+    }
+
+    public void setSquareOrdering(boolean squareOrdering) {
+        this.squareOrdering = squareOrdering;
+    }
+
+    public void setKillerMoves(boolean killerMoves) {
+        this.killerMoves = killerMoves;
+    }
+
+    public void setHistoryHeuristic(boolean historyHeuristic) {
+        this.historyHeuristic = historyHeuristic;
+    }
+
+    public void setTableMoveFirst(boolean tableMoveFirst) {
+        this.tableMoveFirst = tableMoveFirst;
+    }
+
+    //Called before every move the cpu searches. The killers belong to the old position, so they are cleared,
+    //and the history is halved so that it follows the game.
+
+    public void newSearch() {
+        clearKillers();
+        halveHistory();
+    }
+
+    private void clearKillers() {
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = -1;
+            plyKillers[1] = -1;
+        }
+    }
+
+    /*Puts the moves of the mask in the move list of the ply, best first, and returns how many there are.
+    tableMove is the best move stored in the transposition table, or -1.
+    The list is only valid until the next call for the same ply.*/
+
+    public int order(long moves, int ply, int tableMove, char tileColor) {
+        orderedNodes++;
+        int[] list = moveLists[ply];
+        int[] plyKeys = keys[ply];
+        int[] colorHistory = history[tileColor == 'X' ? 0 : 1];
+        int count = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            int key = 0;
+            if (tableMoveFirst && move == tableMove) {
+                key = TABLE_MOVE_KEY;
+            } else if (killerMoves && (move == killers[ply][0] || move == killers[ply][1])) {
+                key = (move == killers[ply][0]) ? KILLER_KEY + 1 : KILLER_KEY;
+            } else {
+                if (historyHeuristic) key += colorHistory[move];
+                if (squareOrdering) key += SQUARE_VALUES[move];
+            }
+            //insertion sort, the lists are short
+            int i = count++;
+            while (i > 0 && plyKeys[i - 1] < key) {
+                list[i] = list[i - 1];
+                plyKeys[i] = plyKeys[i - 1];
+                i--;
+            }
+            list[i] = move;
+            plyKeys[i] = key;
+        }
+        return count;
+    }
+
+    //Returns the move list the last order call filled for the ply.
+
+    public int[] moveList(int ply) {
+        return moveLists[ply];
+    }
+
+    /*Called when move caused a cutoff. index is its place in the move list, 0 if it was the first one,
+    and depth how deep the state was searched below the move.*/
+
+    public void cutoff(int move, int ply, int depth, int index, char tileColor) {
+        cutoffs++;
+        if (index == 0) firstMoveCutoffs++;
+        if (killerMoves && killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        if (historyHeuristic) {
+            int[] colorHistory = history[tileColor == 'X' ? 0 : 1];
+            colorHistory[move] += depth * depth;
+            if (colorHistory[move] > HISTORY_LIMIT) {
+                halveHistory();
+            }
+        }
+    }
+
+    private void halveHistory() {
+        for (int[] scores : history) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] >>= 1;
+            }
+        }
+    }
+
+    public long getOrderedNodes() {
+        return orderedNodes;
+    }
+
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    //The share of the cutoffs that happened on the first move searched. Close to 1 means the ordering is almost perfect.
+
+    public double getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    public void resetCounters() {
+        orderedNodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+}
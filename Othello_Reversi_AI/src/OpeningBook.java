@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*The best moves of the opening positions, found once by the engine and read from a file instead of searched again.
+Every position is stored in its canonical form (see Symmetry) from the side of the player to move,
+so the 8 symmetric copies of a position and both colors share one entry.
+The file holds a small header and then the entries sorted by key, each one ENTRY_BYTES long:
+the key (the Zobrist hash of the canonical position), the score, the best move in the canonical position
+and the depth it was searched to. The file is memory mapped and searched in place with a binary search,
+so opening it costs nothing and no entry is ever copied to the heap. Nothing is written after opening,
+so one OpeningBook can be used by any number of threads.
+The score is stored in a short, see encodeScore: an evaluation as it is, up to MAX_EVALUATION either way,
+and a won or lost game as WON plus the disc difference, so that a certain result is never taken for a big evaluation.*/
+
+public class OpeningBook {
+
+    //The file starts with these 4 ints: a magic number, the version, the number of entries and an unused one
+    static final int MAGIC = 0x4B42544F;
+    //Version 2 stores the scores of won and lost games apart from the evaluations
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 16;
+    //An entry is the key (8 bytes), the score (2), the move (1) and the depth (1)
+    static final int ENTRY_BYTES = 12;
+    //The stored evaluations are cut to this either way. Above it, from WON up, are the won games and below minus it the lost ones
+    static final int MAX_EVALUATION = 32000;
+    static final int WON = 32700;
+    //Set in every entry probe returns, so that none of them is 0
+    private static final long FOUND = 1L << 48;
+
+    private final MappedByteBuffer entries;
+    private final int count;
+
+    //Maps the book file. It fails if the file is not a book of this version.
+
+    public OpeningBook(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is too short to be a book");
+            }
+            entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        entries.order(ByteOrder.LITTLE_ENDIAN);
+        if (entries.getInt(0) != MAGIC || entries.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a book of this version");
+        }
+        count = entries.getInt(8);
+        if (entries.capacity() != HEADER_BYTES + (long) count * ENTRY_BYTES) {
+            throw new IOException(file + " does not hold the " + count + " entries its header says");
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    //Returns the key of a position, the same for all its symmetric copies. player is the one to move.
+
+    public static long key(long player, long opponent) {
+        int symmetry = Symmetry.canonical(player, opponent);
+        return Zobrist.hash(Symmetry.transform(player, symmetry), Symmetry.transform(opponent, symmetry), 'X');
+    }
+
+    //Returns the index of the entry with the given key, or -1 if the book does not have it.
+
+    private int find(long key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = entries.getLong(HEADER_BYTES + middle * ENTRY_BYTES);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /*Looks the position up once and returns all the book has for it packed in a long, read with move, score and depth,
+    or 0 if the position is not in the book. player is the one to move. The move is turned back
+    from the canonical position to this one, and the score is the one Gaming uses, decoded.*/
+
+    public long probe(long player, long opponent) {
+        int symmetry = Symmetry.canonical(player, opponent);
+        long key = Zobrist.hash(Symmetry.transform(player, symmetry), Symmetry.transform(opponent, symmetry), 'X');
+        int index = find(key);
+        if (index < 0) return 0;
+        int move = Symmetry.square(moveAt(index) & 0xFF, Symmetry.INVERSE[symmetry]);
+        return (decodeScore(scoreAt(index)) & 0xFFFFFFFFL) | ((long) move << 32) | ((long) (depthAt(index) & 0xFF) << 40)
+                | FOUND;
+    }
+
+    //Returns the book move of the player to move in the position, or -1 if the position is not in the book.
+
+    public int lookup(long player, long opponent) {
+        long entry = probe(player, opponent);
+        return entry == 0 ? -1 : move(entry);
+    }
+
+    //The move, the score from the side of the player to move and the depth of an entry probe returned.
+
+    public static int move(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 40) & 0xFF;
+    }
+
+    /*Turns a score of Gaming into the short stored in the book. A won or lost game, Gaming.WIN_SCORE plus the disc
+    difference, becomes WON plus the difference, and its opposite for a loss. An evaluation is kept as it is,
+    but cut to MAX_EVALUATION either way, so it always stays apart from the won and lost games.*/
+
+    static short encodeScore(int score) {
+        if (score > Gaming.WIN_SCORE / 2) return (short) (WON + Math.min(64, score - Gaming.WIN_SCORE));
+        if (score < -Gaming.WIN_SCORE / 2) return (short) -(WON + Math.min(64, -score - Gaming.WIN_SCORE));
+        return (short) Math.max(-MAX_EVALUATION, Math.min(MAX_EVALUATION, score));
+    }
+
+    //Turns a stored score back into a score of Gaming.
+
+    static int decodeScore(short stored) {
+        if (stored >= WON) return Gaming.WIN_SCORE + (stored - WON);
+        if (stored <= -WON) return -Gaming.WIN_SCORE - (-stored - WON);
+        return stored;
+    }
+
+    //Returns the key of the entry at index, so that a book can be read back entry by entry.
+
+    long keyAt(int index) {
+        return entries.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    short scoreAt(int index) {
+        return entries.getShort(HEADER_BYTES + index * ENTRY_BYTES + 8);
+    }
+
+    byte moveAt(int index) {
+        return entries.get(HEADER_BYTES + index * ENTRY_BYTES + 10);
+    }
+
+    byte depthAt(int index) {
+        return entries.get(HEADER_BYTES + index * ENTRY_BYTES + 11);
+    }
+
+    /*Writes a book file. The entries must already be sorted by key, with no key twice.
+    moves are the best moves in the canonical positions.*/
+
+    static void write(Path file, long[] keys, short[] scores, byte[] moves, byte[] depths, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + count * ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0);
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && keys[i] <= keys[i - 1]) {
+                throw new IllegalArgumentException("The keys must be sorted and different");
+            }
+            buffer.putLong(keys[i]).putShort(scores[i]).put(moves[i]).put(depths[i]);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
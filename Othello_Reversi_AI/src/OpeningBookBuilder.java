@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*Grows an opening book from the engine's own analysis. Every position reachable in the first plies moves
+of the game is searched once by a Gaming object, and its best move and score are stored.
+The positions are visited in their canonical form, so the symmetric copies are only searched once.
+An existing book is read first and only the positions it does not have, or has from a shallower search, are searched,
+so a book can be grown a few plies at a time.
+
+Usage: java OpeningBookBuilder <book file> [plies] [depth]*/
+
+public class OpeningBookBuilder {
+
+    //What the book knows of a position, in its canonical form
+    private static class Entry {
+        short score;
+        byte move;
+        byte depth;
+
+        Entry(short score, byte move, byte depth) {
+            this.score = score;
+            this.move = move;
+            this.depth = depth;
+        }
+    }
+
+    private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+    //The depth every position is searched to
+    private final int depth;
+    //Counts the positions searched by build
+    private int searched;
+
+    public OpeningBookBuilder(int depth) {
+        this.depth = depth;
+    }
+
+    //Adds all the entries of an existing book.
+
+    public void read(OpeningBook book) {
+        for (int i = 0; i < book.size(); i++) {
+            entries.put(book.keyAt(i), new Entry(book.scoreAt(i), book.moveAt(i), book.depthAt(i)));
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /*Searches every position up to plies moves after the initial position that the book does not know yet,
+    or knows from a search shallower than depth. A pass counts as a ply.
+    Every position is stored for all its symmetric copies, so the players must evaluate them all the same.*/
+
+    public void build(int plies) {
+        Gaming xPlayer = new Gaming(depth, 'X');
+        Gaming oPlayer = new Gaming(depth, 'O');
+        if (!xPlayer.getEvaluator().isSymmetric()) {
+            throw new IllegalStateException("An opening book needs an evaluator that is symmetric");
+        }
+        Set<Long> visited = new HashSet<Long>();
+        ArrayDeque<State> queue = new ArrayDeque<State>();
+        ArrayDeque<Character> colors = new ArrayDeque<Character>();
+        ArrayDeque<Integer> queuePlies = new ArrayDeque<Integer>();
+        queue.add(new State());
+        colors.add('X');
+        queuePlies.add(0);
+        while (!queue.isEmpty()) {
+            State state = queue.poll();
+            char tileColor = colors.poll();
+            int ply = queuePlies.poll();
+            char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+            long player = state.getTiles(tileColor);
+            long opponent = state.getTiles(opponentTileColor);
+            if (!visited.add(OpeningBook.key(player, opponent))) continue;
+
+            long moves = Bitboard.moves(player, opponent);
+            if (moves == 0) {
+                //a pass, the book only holds positions where the player can move
+                if (ply < plies && Bitboard.moves(opponent, player) != 0) {
+                    queue.add(state);
+                    colors.add(opponentTileColor);
+                    queuePlies.add(ply + 1);
+                }
+                continue;
+            }
+            analyse(state, tileColor, tileColor == 'X' ? xPlayer : oPlayer);
+            if (ply == plies) continue;
+            for (; moves != 0; moves &= moves - 1) {
+                State child = new State(state);
+                child.makeMove(Long.numberOfTrailingZeros(moves), tileColor);
+                queue.add(child);
+                colors.add(opponentTileColor);
+                queuePlies.add(ply + 1);
+            }
+        }
+    }
+
+    //Searches the position, unless the book already has it from a search at least as deep, and stores the result.
+
+    private void analyse(State state, char tileColor, Gaming gaming) {
+        char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+        long player = state.getTiles(tileColor);
+        long opponent = state.getTiles(opponentTileColor);
+        int symmetry = Symmetry.canonical(player, opponent);
+        long key = Zobrist.hash(Symmetry.transform(player, symmetry), Symmetry.transform(opponent, symmetry), 'X');
+        Entry known = entries.get(key);
+        if (known != null && (known.depth & 0xFF) >= depth) return;
+
+        SearchResult result = gaming.findBestMove(state);
+        if (result.isPass()) return;
+        short score = OpeningBook.encodeScore(result.getScore());
+        entries.put(key, new Entry(score, (byte) Symmetry.square(result.getBestMove(), symmetry), (byte) result.getDepth()));
+        searched++;
+        if (searched % 100 == 0) {
+            System.out.println(searched + " positions searched, " + entries.size() + " in the book");
+        }
+    }
+
+    //Writes the book, sorted by key.
+
+    public void write(Path file) throws IOException {
+        long[] keys = new long[entries.size()];
+        int count = 0;
+        for (long key : entries.keySet()) {
+            keys[count++] = key;
+        }
+        Arrays.sort(keys);
+        short[] scores = new short[count];
+        byte[] moves = new byte[count];
+        byte[] depths = new byte[count];
+        for (int i = 0; i < count; i++) {
+            Entry entry = entries.get(keys[i]);
+            scores[i] = entry.score;
+            moves[i] = entry.move;
+            depths[i] = entry.depth;
+        }
+        OpeningBook.write(file, keys, scores, moves, depths, count);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java OpeningBookBuilder <book file> [plies] [depth]");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(depth);
+        if (Files.exists(file)) {
+            builder.read(new OpeningBook(file));
+            System.out.println("Read " + builder.size() + " positions from " + file);
+        }
+        builder.build(plies);
+        builder.write(file);
+        System.out.println("Wrote " + builder.size() + " positions to " + file);
+    }
+}
@@ -0,0 +1,199 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*An evaluation built from patterns, groups of cells whose contents together get a trained weight.
+The patterns are the edges with their X cells, the 3x3 and 2x5 corner blocks, the 2nd, 3rd and 4th lines
+and the diagonals of length 4 to 8. Every pattern appears on the board once for every symmetry that gives
+another image of it (the 4 edges, the 4 corners, ...), and all these instances share the same weights.
+A pattern that a mirror maps onto its own cells, like an edge, appears twice on them, its cells read in both orders,
+so that a position and its mirror image get the same score.
+The contents of an instance are read as a number in base 3, one digit per cell: 0 empty, 1 the player's, 2 the opponent's.
+That number is the index of its weight, and the score is the sum of the weights of all the instances.
+The game is split in phases by the number of empty cells, each phase with its own weights.
+
+The weights are shorts in 1/SCALE of a disc, read from a binary file written by PatternTrainer.
+The file is memory mapped and the weights are read straight from the mapping, so loading takes no time
+and all the JVMs using the same file share the same pages. Nothing is written after loading,
+so one PatternEvaluator can be used by any number of threads.*/
+
+public class PatternEvaluator implements Evaluator {
+
+    //The weights are stored in 1/SCALE of a disc
+    static final int SCALE = 64;
+    //The number of game phases, every one covering EMPTIES_PER_PHASE numbers of empty cells
+    static final int PHASES = 6;
+    static final int EMPTIES_PER_PHASE = 10;
+
+    //The cells of every pattern, in the order of their base 3 digits, the first cell being the lowest digit
+    static final int[][] PATTERNS = {
+            {0, 1, 2, 3, 4, 5, 6, 7, 9, 14},        //edge with the 2 X cells
+            {0, 1, 2, 8, 9, 10, 16, 17, 18},        //3x3 corner
+            {0, 1, 2, 3, 4, 8, 9, 10, 11, 12},      //2x5 corner
+            {8, 9, 10, 11, 12, 13, 14, 15},         //2nd line
+            {16, 17, 18, 19, 20, 21, 22, 23},       //3rd line
+            {24, 25, 26, 27, 28, 29, 30, 31},       //4th line
+            {0, 9, 18, 27, 36, 45, 54, 63},         //main diagonal
+            {1, 10, 19, 28, 37, 46, 55},            //diagonal of 7
+            {2, 11, 20, 29, 38, 47},                //diagonal of 6
+            {3, 12, 21, 30, 39},                    //diagonal of 5
+            {4, 13, 22, 31}                         //diagonal of 4
+    };
+
+    //Where the weights of every pattern start in a phase
+    static final int[] PATTERN_OFFSETS = new int[PATTERNS.length];
+    //The weight of the phase itself, added to every State, stored after the pattern weights
+    static final int BIAS;
+    //The number of weights of a phase
+    static final int WEIGHTS_PER_PHASE;
+
+    //The cells of every instance of every pattern on the board, and where the weights of its pattern start
+    static final int[][] INSTANCES;
+    static final int[] INSTANCE_OFFSETS;
+
+    //The file starts with these 4 ints: a magic number, the version, the phases and the weights per phase
+    static final int MAGIC = 0x5750544F;
+    //Version 2 reads the self symmetric patterns in both orders, so the weights of version 1 do not fit it
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 16;
+
+    static {
+        int offset = 0;
+        int instanceCount = 0;
+        int[][][] instances = new int[PATTERNS.length][][];
+        for (int p = 0; p < PATTERNS.length; p++) {
+            PATTERN_OFFSETS[p] = offset;
+            offset += power3(PATTERNS[p].length);
+            instances[p] = symmetricInstances(PATTERNS[p]);
+            instanceCount += instances[p].length;
+        }
+        BIAS = offset;
+        WEIGHTS_PER_PHASE = offset + 1;
+        INSTANCES = new int[instanceCount][];
+        INSTANCE_OFFSETS = new int[instanceCount];
+        int i = 0;
+        for (int p = 0; p < PATTERNS.length; p++) {
+            for (int[] instance : instances[p]) {
+                INSTANCES[i] = instance;
+                INSTANCE_OFFSETS[i] = PATTERN_OFFSETS[p];
+                i++;
+            }
+        }
+    }
+
+    private final MappedByteBuffer weights;
+
+    //Maps the weights file. It fails if the file was written for other patterns or phases.
+
+    public PatternEvaluator(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long expected = HEADER_BYTES + 2L * PHASES * WEIGHTS_PER_PHASE;
+            if (channel.size() != expected) {
+                throw new IOException(file + " has " + channel.size() + " bytes, a weights file has " + expected);
+            }
+            weights = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+        }
+        weights.order(ByteOrder.LITTLE_ENDIAN);
+        if (weights.getInt(0) != MAGIC || weights.getInt(4) != VERSION
+                || weights.getInt(8) != PHASES || weights.getInt(12) != WEIGHTS_PER_PHASE) {
+            throw new IOException(file + " is not a weights file of this version");
+        }
+    }
+
+    private static int power3(int n) {
+        int power = 1;
+        for (int i = 0; i < n; i++) power *= 3;
+        return power;
+    }
+
+    /*Returns the distinct images of the pattern under the 8 symmetries of the board (see Symmetry), the pattern itself first.
+    Every image keeps the order of the cells, so that equal contents give the same index in all of them.
+    Images are compared cell by cell, order included: two images on the same cells in another order are both kept.
+    The images are then closed under the symmetries, so the sum of their weights is the same for all 8 copies of a State.*/
+
+    private static int[][] symmetricInstances(int[] pattern) {
+        int[][] images = new int[8][];
+        int count = 0;
+        for (int symmetry = 0; symmetry < 8; symmetry++) {
+            int[] image = new int[pattern.length];
+            for (int k = 0; k < pattern.length; k++) {
+                image[k] = Symmetry.square(pattern[k], symmetry);
+            }
+            boolean seen = false;
+            for (int j = 0; j < count; j++) {
+                seen |= Arrays.equals(images[j], image);
+            }
+            if (!seen) {
+                images[count++] = image;
+            }
+        }
+        int[][] distinct = new int[count][];
+        System.arraycopy(images, 0, distinct, 0, count);
+        return distinct;
+    }
+
+    //Returns the phase of a State with the given number of empty cells.
+
+    static int phase(int empties) {
+        return Math.min(PHASES - 1, (60 - empties) / EMPTIES_PER_PHASE);
+    }
+
+    /*Returns the index of the weight of the given instance within its phase, for the board of player and opponent.
+    The trainer uses it too, so both always agree on the indexes.*/
+
+    static int feature(int instance, long player, long opponent) {
+        int[] cells = INSTANCES[instance];
+        int index = 0;
+        for (int k = cells.length - 1; k >= 0; k--) {
+            int cell = cells[k];
+            index = index * 3 + (int) ((player >>> cell) & 1) + 2 * (int) ((opponent >>> cell) & 1);
+        }
+        return INSTANCE_OFFSETS[instance] + index;
+    }
+
+    //The score, in 1/SCALE of a disc, of the disc difference the player is expected to end the game with.
+
+    public int evaluate(State currentState, char tileColor, char opponentTileColor) {
+        long player = currentState.getTiles(tileColor);
+        long opponent = currentState.getTiles(opponentTileColor);
+        int base = phase(Long.bitCount(~(player | opponent))) * WEIGHTS_PER_PHASE;
+        int score = weight(base + BIAS);
+        for (int i = 0; i < INSTANCES.length; i++) {
+            score += weight(base + feature(i, player, opponent));
+        }
+        return score;
+    }
+
+    //Every pattern is weighted in all its symmetric instances, in both orders of their cells, see symmetricInstances.
+
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    private int weight(int index) {
+        return weights.getShort(HEADER_BYTES + 2 * index);
+    }
+
+    //Writes a weights file, the weights of phase 0 first. weights must have PHASES * WEIGHTS_PER_PHASE values.
+
+    static void write(Path file, short[] weights) throws IOException {
+        if (weights.length != PHASES * WEIGHTS_PER_PHASE) {
+            throw new IllegalArgumentException("There must be " + PHASES * WEIGHTS_PER_PHASE + " weights");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 2 * weights.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(PHASES).putInt(WEIGHTS_PER_PHASE);
+        buffer.asShortBuffer().put(weights);
+        buffer.rewind();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
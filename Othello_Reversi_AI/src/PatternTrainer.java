@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/*Fits the weights of the PatternEvaluator to games the engine plays against itself.
+Every game starts with a few random moves, so that the games differ, and then two Gaming objects play it out.
+The last moves are played by the endgame solver, so the end of every game is played perfectly.
+Every position of a game is stored from the side of the player to move, together with the disc difference
+that player ended the game with, and the weights are fitted to predict it by stochastic gradient descent.
+
+Usage: java PatternTrainer <weights file> [games] [depth] [epochs] [seed]
+The weights file can then be loaded with new PatternEvaluator(path).*/
+
+public class PatternTrainer {
+
+    //The number of random moves every game starts with
+    static final int RANDOM_PLIES = 8;
+
+    private final Random random;
+    //The depth the Gaming objects search to
+    private final int depth;
+
+    //The positions stored so far: the tiles of the player to move, of his opponent,
+    //and the disc difference he ended the game with
+    private long[] players = new long[1 << 16];
+    private long[] opponents = new long[1 << 16];
+    private byte[] results = new byte[1 << 16];
+    private int size;
+
+    public PatternTrainer(int depth, long seed) {
+        this.depth = depth;
+        this.random = new Random(seed);
+    }
+
+    public int getPositionCount() {
+        return size;
+    }
+
+    //Plays the given number of games and stores their positions.
+
+    public void playGames(int games) {
+        Gaming xPlayer = new Gaming(depth, 'X', new TranspositionTable(16));
+        Gaming oPlayer = new Gaming(depth, 'O', new TranspositionTable(16));
+        for (int game = 0; game < games; game++) {
+            playGame(xPlayer, oPlayer);
+            if ((game + 1) % 100 == 0) {
+                System.out.println((game + 1) + " games, " + size + " positions");
+            }
+        }
+    }
+
+    private void playGame(Gaming xPlayer, Gaming oPlayer) {
+        State state = new State();
+        char tileColor = 'X';
+        int passes = 0;
+        int ply = 0;
+        int first = size;
+        while (passes < 2) {
+            char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+            state.moveGenerator(state, tileColor);
+            if (state.validMoves == 0) {
+                passes++;
+                tileColor = opponentTileColor;
+                continue;
+            }
+            passes = 0;
+            //the sign of the result is stored for now, the result itself is only known at the end
+            add(state.getTiles(tileColor), state.getTiles(opponentTileColor), (byte) (tileColor == 'X' ? 1 : -1));
+            if (ply < RANDOM_PLIES) {
+                long moves = state.validMoves;
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                state.makeMove(Long.numberOfTrailingZeros(moves), tileColor);
+            } else {
+                state.makeMove((tileColor == 'X' ? xPlayer : oPlayer).findBestMove(state).getBestMove(), tileColor);
+            }
+            ply++;
+            tileColor = opponentTileColor;
+        }
+        int difference = EndgameSolver.finalDifference(state.xTiles, state.oTiles);
+        for (int i = first; i < size; i++) {
+            results[i] = (byte) (results[i] * difference);
+        }
+    }
+
+    private void add(long player, long opponent, byte result) {
+        if (size == players.length) {
+            players = Arrays.copyOf(players, size * 2);
+            opponents = Arrays.copyOf(opponents, size * 2);
+            results = Arrays.copyOf(results, size * 2);
+        }
+        players[size] = player;
+        opponents[size] = opponent;
+        results[size] = result;
+        size++;
+    }
+
+    /*Fits the weights to the stored positions with stochastic gradient descent, going over all of them
+    epochs times in a random order, and returns them in the units and order of a weights file.
+    After every epoch the mean squared error, in discs, is printed.*/
+
+    public short[] fit(int epochs) {
+        int instances = PatternEvaluator.INSTANCES.length;
+        float[] weights = new float[PatternEvaluator.PHASES * PatternEvaluator.WEIGHTS_PER_PHASE];
+        int[] features = new int[instances];
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        //every step moves the prediction by about (instances + 1) * rate of the error
+        float rate = 0.5f / (instances + 1);
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            shuffle(order);
+            double squaredError = 0;
+            for (int i : order) {
+                long player = players[i];
+                long opponent = opponents[i];
+                int base = PatternEvaluator.phase(Long.bitCount(~(player | opponent))) * PatternEvaluator.WEIGHTS_PER_PHASE;
+                float prediction = weights[base + PatternEvaluator.BIAS];
+                for (int k = 0; k < instances; k++) {
+                    features[k] = base + PatternEvaluator.feature(k, player, opponent);
+                    prediction += weights[features[k]];
+                }
+                float error = results[i] - prediction;
+                squaredError += error * error;
+                float step = rate * error;
+                weights[base + PatternEvaluator.BIAS] += step;
+                for (int k = 0; k < instances; k++) {
+                    weights[features[k]] += step;
+                }
+            }
+            System.out.printf("epoch %d: mean squared error %.2f%n", epoch + 1, size == 0 ? 0 : squaredError / size);
+            rate *= 0.8f;
+        }
+        short[] packed = new short[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            long value = Math.round(weights[i] * PatternEvaluator.SCALE);
+            packed[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        }
+        return packed;
+    }
+
+    private void shuffle(int[] order) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java PatternTrainer <weights file> [games] [depth] [epochs] [seed]");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int epochs = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+
+        PatternTrainer trainer = new PatternTrainer(depth, seed);
+        trainer.playGames(games);
+        PatternEvaluator.write(file, trainer.fit(epochs));
+        System.out.println("Wrote the weights of " + trainer.getPositionCount() + " positions to " + file);
+    }
+}
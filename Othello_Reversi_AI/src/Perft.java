@@ -0,0 +1,258 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*Perft counts the leaves of the game tree below a position to a fixed depth, playing every valid move.
+The counts from the initial position are known, so if they come out right the move generator and the flipping
+are right too, and since perft does nothing but generate and play moves it also measures how fast they are.
+A pass counts as a ply, like a move. A game that ends before the depth is reached counts as one leaf.
+With check turned on every node is also compared against a slow cell by cell generator, so positions
+with no known counts can be verified too. PerftTest checks the counts up to depth 8, and the check mode
+on a few middle game positions, on every Maven build.
+
+Usage: java Perft verify [maxDepth]              checks the known counts from the initial position
+       java Perft <depth> [threads] [board X|O]  counts from the initial position or the given board
+       java Perft divide <depth> [board X|O]     prints the count below every move of the position
+       add check as the last argument to compare every node against the slow generator*/
+
+public class Perft {
+
+    //The number of leaves from the initial position, X to move, at depths 1, 2, ...
+    static final long[] INITIAL_COUNTS = {
+            4, 12, 56, 244, 1396, 8200, 55092, 390216, 3005288, 24571284, 212258800, 1939886636L
+    };
+
+    //The eight directions as row and column steps, for the slow generator
+    private static final int[][] DIRECTIONS = {
+            {-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}
+    };
+
+    //If true every node is also checked against the slow generator
+    private final boolean check;
+
+    public Perft(boolean check) {
+        this.check = check;
+    }
+
+    public Perft() {
+        this(false);
+    }
+
+    /*Counts the leaves depth plies below state, tileColor being the player to move.
+    The moves are played in place, so state is the same when it returns.*/
+
+    public long perft(State state, char tileColor, int depth) {
+        return perft(state, tileColor, depth, false);
+    }
+
+    private long perft(State state, char tileColor, int depth, boolean passed) {
+        if (depth == 0) return 1;
+        char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+        long moves = Bitboard.moves(state.getTiles(tileColor), state.getTiles(opponentTileColor));
+        if (check) checkMoves(state, tileColor, moves);
+        if (moves == 0) {
+            //both players passed one after the other, the game is over
+            if (passed) return 1;
+            return perft(state, opponentTileColor, depth - 1, true);
+        }
+        if (depth == 1 && !check) return Long.bitCount(moves);
+        long leaves = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            long before = check ? state.getTiles(opponentTileColor) : 0;
+            long flipped = state.makeMove(move, tileColor);
+            if (check) checkFlips(state, tileColor, move, before, flipped);
+            leaves += perft(state, opponentTileColor, depth - 1, false);
+            state.undoMove(move, flipped, tileColor);
+        }
+        return leaves;
+    }
+
+    /*Same count as perft, but the moves of the first two plies are split between the given number of threads.
+    Every thread works on its own copy of the board.*/
+
+    public long perft(State state, char tileColor, int depth, int threads) throws InterruptedException {
+        if (threads <= 1 || depth < 3) return perft(state, tileColor, depth);
+        List<State> children = new ArrayList<>();
+        List<Character> colors = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        long leaves = split(state, tileColor, depth, 2, children, colors, depths);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> counts = new ArrayList<>();
+            for (int i = 0; i < children.size(); i++) {
+                State child = children.get(i);
+                char color = colors.get(i);
+                int childDepth = depths.get(i);
+                counts.add(pool.submit(() -> new Perft(check).perft(child, color, childDepth)));
+            }
+            for (Future<Long> count : counts) {
+                leaves += count.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return leaves;
+    }
+
+    //Collects copies of the positions plies below state to hand out to the threads.
+    //Games that end before that are counted right away, and their count returned.
+
+    private long split(State state, char tileColor, int depth, int plies, List<State> children,
+                       List<Character> colors, List<Integer> depths) {
+        if (plies == 0 || depth == 0) {
+            children.add(new State(state));
+            colors.add(tileColor);
+            depths.add(depth);
+            return 0;
+        }
+        char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+        long moves = Bitboard.moves(state.getTiles(tileColor), state.getTiles(opponentTileColor));
+        if (moves == 0) {
+            //counted right here, it is small
+            return perft(state, tileColor, depth);
+        }
+        long leaves = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            long flipped = state.makeMove(move, tileColor);
+            leaves += split(state, opponentTileColor, depth - 1, plies - 1, children, colors, depths);
+            state.undoMove(move, flipped, tileColor);
+        }
+        return leaves;
+    }
+
+    //Prints the number of leaves below every move of the position, to find which move a wrong count comes from.
+
+    public long divide(State state, char tileColor, int depth) {
+        char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+        long moves = Bitboard.moves(state.getTiles(tileColor), state.getTiles(opponentTileColor));
+        if (moves == 0 || depth == 0) {
+            long leaves = perft(state, tileColor, depth);
+            System.out.println("pass: " + leaves);
+            return leaves;
+        }
+        long total = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            long flipped = state.makeMove(move, tileColor);
+            long leaves = perft(state, opponentTileColor, depth - 1);
+            state.undoMove(move, flipped, tileColor);
+            System.out.println(State.squareName(move) + ": " + leaves);
+            total += leaves;
+        }
+        return total;
+    }
+
+    /*The slow generator. It walks from every empty cell in every direction, one cell at a time,
+    the way the board was searched before it was made of bitboards. It is only used to check the fast one.*/
+
+    static long slowMoves(State state, char tileColor) {
+        long moves = 0;
+        for (int square = 0; square < 64; square++) {
+            if (state.getTile(square / State.dimension, square % State.dimension) == 0
+                    && slowFlips(state, tileColor, square) != 0) {
+                moves |= 1L << square;
+            }
+        }
+        return moves;
+    }
+
+    //Returns the tiles a move of tileColor on square would flip, found by the slow generator.
+
+    static long slowFlips(State state, char tileColor, int square) {
+        char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+        long flips = 0;
+        for (int[] direction : DIRECTIONS) {
+            int i = square / State.dimension + direction[0];
+            int j = square % State.dimension + direction[1];
+            long line = 0;
+            while (i >= 0 && i < State.dimension && j >= 0 && j < State.dimension
+                    && state.getTile(i, j) == opponentTileColor) {
+                line |= 1L << (i * State.dimension + j);
+                i += direction[0];
+                j += direction[1];
+            }
+            if (i >= 0 && i < State.dimension && j >= 0 && j < State.dimension && state.getTile(i, j) == tileColor) {
+                flips |= line;
+            }
+        }
+        return flips;
+    }
+
+    private static void checkMoves(State state, char tileColor, long moves) {
+        long expected = slowMoves(state, tileColor);
+        if (moves != expected) {
+            throw new IllegalStateException("Wrong moves for " + tileColor + " in " + state
+                    + ": " + Long.toHexString(moves) + " instead of " + Long.toHexString(expected));
+        }
+    }
+
+    //Called after the move was made, so the board before it is rebuilt from the flipped mask to run the slow generator on.
+
+    private static void checkFlips(State state, char tileColor, int move, long opponentBefore, long flipped) {
+        State before = new State(state);
+        before.undoMove(move, flipped, tileColor);
+        long expected = slowFlips(before, tileColor, move);
+        if (flipped != expected || (state.getTiles(tileColor == 'X' ? 'O' : 'X') | flipped) != opponentBefore) {
+            throw new IllegalStateException("Wrong flips for " + tileColor + " on " + State.squareName(move) + " in " + before
+                    + ": " + Long.toHexString(flipped) + " instead of " + Long.toHexString(expected));
+        }
+    }
+
+    //Checks the counts from the initial position up to maxDepth. Returns false if any of them is wrong.
+
+    public boolean verify(int maxDepth, int threads) throws InterruptedException {
+        boolean correct = true;
+        for (int depth = 1; depth <= maxDepth && depth <= INITIAL_COUNTS.length; depth++) {
+            long start = System.nanoTime();
+            long leaves = perft(new State(), 'X', depth, threads);
+            long time = System.nanoTime() - start;
+            boolean ok = leaves == INITIAL_COUNTS[depth - 1];
+            correct &= ok;
+            System.out.println("depth " + depth + ": " + leaves + (ok ? " ok" : " WRONG, expected " + INITIAL_COUNTS[depth - 1])
+                    + " (" + report(leaves, time) + ")");
+        }
+        return correct;
+    }
+
+    private static String report(long leaves, long nanos) {
+        return String.format("%.3f s, %.0f nodes/s", nanos / 1e9, nanos == 0 ? 0 : leaves * 1e9 / nanos);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean check = args.length > 0 && args[args.length - 1].equalsIgnoreCase("check");
+        int count = check ? args.length - 1 : args.length;
+        Perft perft = new Perft(check);
+        if (count == 0) {
+            System.out.println("Usage: java Perft verify [maxDepth] | <depth> [threads] [board X|O] | divide <depth> [board X|O], then check to compare with the slow generator");
+            return;
+        }
+        if (args[0].equals("verify")) {
+            int maxDepth = count > 1 ? Integer.parseInt(args[1]) : 9;
+            if (!perft.verify(maxDepth, Runtime.getRuntime().availableProcessors())) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args[0].equals("divide")) {
+            int depth = Integer.parseInt(args[1]);
+            State state = count > 3 ? new State(args[2]) : new State();
+            char tileColor = count > 3 ? Character.toUpperCase(args[3].charAt(0)) : 'X';
+            System.out.println("total: " + perft.divide(state, tileColor, depth));
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        int threads = count > 1 ? Integer.parseInt(args[1]) : 1;
+        State state = count > 3 ? new State(args[2]) : new State();
+        char tileColor = count > 3 ? Character.toUpperCase(args[3].charAt(0)) : 'X';
+        long start = System.nanoTime();
+        long leaves = perft.perft(state, tileColor, depth, threads);
+        System.out.println("perft " + depth + ": " + leaves + " (" + report(leaves, System.nanoTime() - start) + ")");
+    }
+}
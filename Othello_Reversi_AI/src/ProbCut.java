@@ -0,0 +1,118 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/*The calibration of Multi-ProbCut, the forward pruning Gaming uses when it is given one.
+The score of a deep search of a position is close to a straight line through the score of a shallow search of it:
+deep = slope * shallow + intercept, give or take sigma. So before searching a node deep, a shallow search can tell
+if the deep one would almost surely end above beta or below alpha, and the node is cut without the deep search.
+"Almost surely" means by more than threshold * sigma, so the bigger the threshold the fewer mistakes and cuts.
+It is Multi-ProbCut since every remaining depth has its own shallow depth and line, and so does every game phase,
+the phases being the ones of PatternEvaluator. The lines are fitted by ProbCutCalibrator, with scores from
+the side of the player to move, and only fit the evaluator they were fitted with.
+
+The file is text, one line per phase and depth: phase depth shallow slope intercept sigma, # starting a comment.
+Nothing is written after reading, so one ProbCut can be used by any number of threads.*/
+
+public class ProbCut {
+
+    //The deepest remaining depth a calibration can have
+    static final int MAX_DEPTH = 32;
+    //The threshold used unless another one is set
+    static final double DEFAULT_THRESHOLD = 1.5;
+
+    //Indexed by phase and remaining depth. A shallow depth of 0 means there is no cut at that depth
+    private final int[][] shallow = new int[PatternEvaluator.PHASES][MAX_DEPTH + 1];
+    private final double[][] slope = new double[PatternEvaluator.PHASES][MAX_DEPTH + 1];
+    private final double[][] intercept = new double[PatternEvaluator.PHASES][MAX_DEPTH + 1];
+    private final double[][] sigma = new double[PatternEvaluator.PHASES][MAX_DEPTH + 1];
+    private double threshold = DEFAULT_THRESHOLD;
+
+    public ProbCut() {
+    }
+
+    //Reads a calibration file written by write.
+
+    public ProbCut(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\\s+");
+                try {
+                    if (fields.length != 6) throw new IllegalArgumentException("6 fields expected");
+                    set(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                            Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), Double.parseDouble(fields[5]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + " line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    //Sets the line of a phase and depth. The shallow depth must be smaller than the depth, and the slope positive.
+
+    public void set(int phase, int depth, int shallowDepth, double slope, double intercept, double sigma) {
+        if (phase < 0 || phase >= PatternEvaluator.PHASES || depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("No phase " + phase + " depth " + depth);
+        }
+        if (shallowDepth < 1 || shallowDepth >= depth || slope <= 0 || sigma < 0) {
+            throw new IllegalArgumentException("Not a valid cut at phase " + phase + " depth " + depth);
+        }
+        this.shallow[phase][depth] = shallowDepth;
+        this.slope[phase][depth] = slope;
+        this.intercept[phase][depth] = intercept;
+        this.sigma[phase][depth] = sigma;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    //Sets how many sigmas the shallow score must be past a bound for a cut. Set it before the search uses this ProbCut.
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    //Returns the depth of the shallow search for a node with the given empty cells and remaining depth, 0 for no cut.
+
+    public int shallowDepth(int empties, int depth) {
+        return depth > MAX_DEPTH ? 0 : shallow[PatternEvaluator.phase(empties)][depth];
+    }
+
+    public double slope(int empties, int depth) {
+        return slope[PatternEvaluator.phase(empties)][depth];
+    }
+
+    public double intercept(int empties, int depth) {
+        return intercept[PatternEvaluator.phase(empties)][depth];
+    }
+
+    //Returns threshold * sigma, how far past a bound the predicted deep score must be for a cut.
+
+    public double margin(int empties, int depth) {
+        return threshold * sigma[PatternEvaluator.phase(empties)][depth];
+    }
+
+    //Writes the calibration, the phases and depths with no cut left out.
+
+    public void write(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("# phase depth shallow slope intercept sigma");
+            writer.newLine();
+            for (int phase = 0; phase < PatternEvaluator.PHASES; phase++) {
+                for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+                    if (shallow[phase][depth] == 0) continue;
+                    writer.write(String.format(Locale.ROOT, "%d %d %d %.4f %.2f %.2f", phase, depth,
+                            shallow[phase][depth], slope[phase][depth], intercept[phase][depth], sigma[phase][depth]));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+}
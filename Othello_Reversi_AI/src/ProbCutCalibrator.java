@@ -0,0 +1,221 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/*Fits a ProbCut calibration to positions from games recorded by SelfPlay.
+Every position is searched once to the calibration depth, and the score of every iteration is kept,
+so one search gives the scores at all the depths. For every phase and every depth the score at that depth
+is then fitted to a straight line through the score at its shallow depth, by least squares, and sigma is
+the standard deviation of what is left. Afterwards the positions not used for the fit are searched
+with and without the calibration, to show how many nodes it saves and how often it changes the move.
+
+Usage: java ProbCutCalibrator <records file> <calibration file> [depth] [positions] [weights file]
+The records file is the output of SelfPlay. Without a weights file the lines are fitted for the Heuristic.*/
+
+public class ProbCutCalibrator {
+
+    //Positions with fewer empty cells are left to the endgame solver, so they are not calibrated
+    static final int MIN_EMPTIES = Gaming.DEFAULT_ENDGAME_EMPTIES + 1;
+    //A phase and depth with fewer scores than this gets no line
+    static final int MIN_SAMPLES = 20;
+    //Every TEST_EVERY-th position is kept out of the fit to measure the calibration on
+    static final int TEST_EVERY = 10;
+
+    private final Evaluator evaluator;
+    //The depth the positions are searched to, the deepest one calibrated
+    private final int depth;
+
+    //The positions read: the tiles and the player to move
+    private long[] xTiles = new long[1024];
+    private long[] oTiles = new long[1024];
+    private char[] colors = new char[1024];
+    private int size;
+
+    public ProbCutCalibrator(Evaluator evaluator, int depth) {
+        this.evaluator = evaluator;
+        this.depth = depth;
+    }
+
+    public int getPositionCount() {
+        return size;
+    }
+
+    //Returns the depth the shallow search of a node with the given remaining depth goes to:
+    //about half of it, and of the same parity, since the scores of odd and even depths differ. 0 below depth 3.
+
+    static int shallowDepth(int depth) {
+        return depth < 3 ? 0 : depth - 2 * ((depth + 2) / 4);
+    }
+
+    /*Reads the games of a SelfPlay records file and keeps every one of their positions with at least
+    MIN_EMPTIES empty cells where the player to move has a move.*/
+
+    public void read(Path records) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(records)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("[")) continue;
+                State state = new State();
+                char tileColor = 'X';
+                for (String word : line.split("\\s+")) {
+                    if (word.startsWith("{")) continue;
+                    char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+                    if (!word.equals("--")) {
+                        int move = State.square(word);
+                        long moves = Bitboard.moves(state.getTiles(tileColor), state.getTiles(opponentTileColor));
+                        if (move < 0 || (moves & (1L << move)) == 0) {
+                            throw new IOException("Not a valid move in " + records + ": " + word);
+                        }
+                        if (Long.bitCount(state.getEmpty()) >= MIN_EMPTIES) add(state, tileColor);
+                        state.makeMove(move, tileColor);
+                    }
+                    tileColor = opponentTileColor;
+                }
+            }
+        }
+    }
+
+    private void add(State state, char tileColor) {
+        if (size == colors.length) {
+            xTiles = Arrays.copyOf(xTiles, size * 2);
+            oTiles = Arrays.copyOf(oTiles, size * 2);
+            colors = Arrays.copyOf(colors, size * 2);
+        }
+        xTiles[size] = state.xTiles;
+        oTiles[size] = state.oTiles;
+        colors[size] = tileColor;
+        size++;
+    }
+
+    //Returns a player for the calibration: no book, no endgame solver and the evaluator being calibrated.
+
+    private Gaming player(char tileColor, TranspositionTable table) {
+        Gaming gaming = new Gaming(depth, tileColor, table);
+        gaming.setEvaluator(evaluator);
+        gaming.setEndgameEmpties(0);
+        return gaming;
+    }
+
+    /*Searches up to positions of the positions read, spread evenly over all of them but the test ones,
+    and returns the calibration fitted to their scores.*/
+
+    public ProbCut fit(int positions) {
+        //scores[i][d] is the score of the i-th position searched at depth d, from the side of the player to move
+        int step = Math.max(1, (size - size / TEST_EVERY) / positions);
+        int[][] scores = new int[positions][];
+        int[] phases = new int[positions];
+        int count = 0;
+        int[] current = new int[depth + 1];
+        SearchListener recorder = new SearchListener() {
+            public void iterationFinished(int iteration, int bestMove, int score, long nodes, long nanos) {
+                current[iteration] = score;
+            }
+        };
+        TranspositionTable table = new TranspositionTable(18);
+        Gaming[] players = {player('X', table), player('O', table)};
+        players[0].addSearchListener(recorder);
+        players[1].addSearchListener(recorder);
+        int seen = 0;
+        for (int i = 0; i < size && count < positions; i++) {
+            if (i % TEST_EVERY == 0 || seen++ % step != 0) continue;
+            State board = new State(xTiles[i], oTiles[i]);
+            Arrays.fill(current, Integer.MIN_VALUE);
+            table.clear();
+            players[colors[i] == 'X' ? 0 : 1].findBestMove(board);
+            scores[count] = current.clone();
+            phases[count] = PatternEvaluator.phase(Long.bitCount(board.getEmpty()));
+            count++;
+            if (count % 100 == 0) System.out.println(count + " positions searched");
+        }
+
+        ProbCut probCut = new ProbCut();
+        for (int phase = 0; phase < PatternEvaluator.PHASES; phase++) {
+            for (int deep = 3; deep <= depth; deep++) {
+                int shallow = shallowDepth(deep);
+                double n = 0, sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+                for (int i = 0; i < count; i++) {
+                    if (phases[i] != phase || !usable(scores[i][shallow]) || !usable(scores[i][deep])) continue;
+                    double x = scores[i][shallow];
+                    double y = scores[i][deep];
+                    n++;
+                    sumX += x;
+                    sumY += y;
+                    sumXX += x * x;
+                    sumXY += x * y;
+                }
+                double variance = n * sumXX - sumX * sumX;
+                if (n < MIN_SAMPLES || variance <= 0) continue;
+                double slope = (n * sumXY - sumX * sumY) / variance;
+                if (slope <= 0) continue;
+                double intercept = (sumY - slope * sumX) / n;
+                double squares = 0;
+                for (int i = 0; i < count; i++) {
+                    if (phases[i] != phase || !usable(scores[i][shallow]) || !usable(scores[i][deep])) continue;
+                    double error = scores[i][deep] - (slope * scores[i][shallow] + intercept);
+                    squares += error * error;
+                }
+                probCut.set(phase, deep, shallow, slope, intercept, Math.sqrt(squares / n));
+            }
+        }
+        return probCut;
+    }
+
+    //Only the scores of searches that reached the depth and did not find a won or lost game are fitted.
+
+    private static boolean usable(int score) {
+        return score != Integer.MIN_VALUE && Math.abs(score) < Gaming.WIN_SCORE / 2;
+    }
+
+    /*Searches the test positions to the calibration depth with and without probCut, and prints the nodes
+    of both and how many times the moves differ.*/
+
+    public void measure(ProbCut probCut, int positions) {
+        long[] nodes = new long[2];
+        long[] nanos = new long[2];
+        int differences = 0;
+        int count = 0;
+        TranspositionTable table = new TranspositionTable(18);
+        Gaming[] players = {player('X', table), player('O', table)};
+        for (int i = 0; i < size && count < positions; i += TEST_EVERY) {
+            int[] moves = new int[2];
+            for (int pruned = 0; pruned < 2; pruned++) {
+                State board = new State(xTiles[i], oTiles[i]);
+                Gaming gaming = players[colors[i] == 'X' ? 0 : 1];
+                gaming.setProbCut(pruned == 1 ? probCut : null);
+                table.clear();
+                SearchResult result = gaming.findBestMove(board);
+                nodes[pruned] += result.getNodes();
+                nanos[pruned] += gaming.getLastStatistics().getNanos();
+                moves[pruned] = result.getBestMove();
+            }
+            if (moves[0] != moves[1]) differences++;
+            count++;
+        }
+        System.out.printf("%d test positions at depth %d: %d nodes and %.1f s without ProbCut, %d nodes and %.1f s with it"
+                        + " (%.1f%% of the nodes), %d different moves%n", count, depth, nodes[0], nanos[0] / 1e9,
+                nodes[1], nanos[1] / 1e9, nodes[0] == 0 ? 0 : 100.0 * nodes[1] / nodes[0], differences);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java ProbCutCalibrator <records file> <calibration file> [depth] [positions] [weights file]");
+            return;
+        }
+        Path records = Paths.get(args[0]);
+        Path file = Paths.get(args[1]);
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int positions = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        Evaluator evaluator = args.length > 4 ? new PatternEvaluator(Paths.get(args[4])) : new Heuristic();
+
+        ProbCutCalibrator calibrator = new ProbCutCalibrator(evaluator, depth);
+        calibrator.read(records);
+        System.out.println("Read " + calibrator.getPositionCount() + " positions from " + records);
+        ProbCut probCut = calibrator.fit(positions);
+        probCut.write(file);
+        System.out.println("Wrote the calibration to " + file);
+        calibrator.measure(probCut, Math.max(10, positions / TEST_EVERY));
+    }
+}
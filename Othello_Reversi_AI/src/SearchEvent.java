@@ -0,0 +1,45 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*A Java Flight Recorder event for every move a Gaming object chooses. Its duration is the time the move took.
+JFR only records it while a recording with it enabled runs, and costs almost nothing otherwise.*/
+
+@Name("othello.Search")
+@Label("Search")
+@Category("Othello")
+@Description("One move chosen by a Gaming object")
+public class SearchEvent extends Event {
+
+    @Label("Source")
+    String source;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Score")
+    int score;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Leaf Evaluations")
+    long leafEvaluations;
+
+    @Label("Cutoffs")
+    long cutoffs;
+
+    @Label("First Move Cutoff Rate")
+    double firstMoveCutoffRate;
+
+    @Label("Table Hit Rate")
+    double tableHitRate;
+
+    @Label("Effective Branching Factor")
+    double effectiveBranchingFactor;
+}
@@ -0,0 +1,17 @@
+/*Gets told what a Gaming object's search is doing. Add one with Gaming.addSearchListener.
+The methods are called on the searching thread, so they should return quickly.
+Both do nothing unless overridden, so a listener only implements what it needs.*/
+
+public interface SearchListener {
+
+    //Called every time an iteration of the iterative deepening finishes, with its best move and score.
+    //nodes and nanos are the nodes and the time of that iteration alone.
+
+    default void iterationFinished(int depth, int bestMove, int score, long nodes, long nanos) {
+    }
+
+    //Called when a move was chosen, whether it was searched, solved or taken from the book.
+
+    default void searchFinished(SearchStatistics statistics) {
+    }
+}
@@ -0,0 +1,98 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*A SearchListener that keeps the statistics of the last move and the totals of all moves,
+and shows them through JMX once registered. One monitor can listen to several Gaming objects.*/
+
+public class SearchMonitor implements SearchListener, SearchMonitorMXBean {
+
+    private volatile SearchStatistics last;
+    private long moves;
+    private long totalNodes;
+    private long totalNanos;
+
+    public synchronized void searchFinished(SearchStatistics statistics) {
+        last = statistics;
+        moves++;
+        totalNodes += statistics.getNodes();
+        totalNanos += statistics.getNanos();
+    }
+
+    //Registers the monitor with the platform MBean server as othello:type=Search,name=<name>.
+
+    public void register(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("othello:type=Search,name=" + name));
+    }
+
+    public SearchStatistics getLast() {
+        return last;
+    }
+
+    public synchronized long getMoves() {
+        return moves;
+    }
+
+    public synchronized long getTotalNodes() {
+        return totalNodes;
+    }
+
+    public synchronized long getAverageNodesPerSecond() {
+        return totalNanos == 0 ? 0 : (long) (totalNodes * 1e9 / totalNanos);
+    }
+
+    public String getLastSource() {
+        SearchStatistics statistics = last;
+        return statistics == null ? "" : statistics.getSource().toString();
+    }
+
+    public int getLastDepth() {
+        SearchStatistics statistics = last;
+        return statistics == null ? 0 : statistics.getDepth();
+    }
+
+    public int getLastScore() {
+        SearchStatistics statistics = last;
+        return statistics == null ? 0 : statistics.getScore();
+    }
+
+    public long getLastNodes() {
+        SearchStatistics statistics = last;
+        return statistics == null ? 0 : statistics.getNodes();
+    }
+
+    public long getLastLeafEvaluations() {
+        SearchStatistics statistics = last;
+        return statistics == null ? 0 : statistics.getLeafEvaluations();
+    }
+
+    public long getLastCutoffs() {
+        SearchStatistics statistics = last;
+        return statistics == null ? 0 : statistics.getCutoffs();
+    }
+
+    public double getLastMillis() {
+        SearchStatistics statistics = last;
+        return statistics == null ? 0 : statistics.getNanos() / 1e6;
+    }
+
+    public long getLastNodesPerSecond() {
+        SearchStatistics statistics = last;
+        return statistics == null ? 0 : statistics.getNodesPerSecond();
+    }
+
+    public double getLastFirstMoveCutoffRate() {
+        SearchStatistics statistics = last;
+        return statistics == null ? 0 : statistics.getFirstMoveCutoffRate();
+    }
+
+    public double getLastTableHitRate() {
+        SearchStatistics statistics = last;
+        return statistics == null ? 0 : statistics.getTableHitRate();
+    }
+
+    public double getLastEffectiveBranchingFactor() {
+        SearchStatistics statistics = last;
+        return statistics == null ? 0 : statistics.getEffectiveBranchingFactor();
+    }
+}
@@ -0,0 +1,33 @@
+/*The attributes a SearchMonitor shows through JMX, for example in JConsole or VisualVM.
+The Last ones are about the last move chosen, the others about all the moves since the monitor was created.*/
+
+public interface SearchMonitorMXBean {
+
+    long getMoves();
+
+    long getTotalNodes();
+
+    long getAverageNodesPerSecond();
+
+    String getLastSource();
+
+    int getLastDepth();
+
+    int getLastScore();
+
+    long getLastNodes();
+
+    long getLastLeafEvaluations();
+
+    long getLastCutoffs();
+
+    double getLastMillis();
+
+    long getLastNodesPerSecond();
+
+    double getLastFirstMoveCutoffRate();
+
+    double getLastTableHitRate();
+
+    double getLastEffectiveBranchingFactor();
+}
@@ -0,0 +1,68 @@
+/*What a search found for a position: the move to play, its score from the side of the player who searched,
+the principal variation, the depth reached and the nodes visited.
+The principal variation is the line of moves both players are expected to play from the position, starting with
+the best move, as square numbers, PASS standing for a pass. It can be shorter than the depth, when the line
+ends in a position found in the transposition table or in the end of the game.*/
+
+public class SearchResult {
+
+    //The move of a player who cannot move, in the best move and the principal variation
+    public static final int PASS = -1;
+
+    private final int bestMove;
+    private final int score;
+    private final int[] principalVariation;
+    private final int depth;
+    private final long nodes;
+
+    SearchResult(int bestMove, int score, int[] principalVariation, int depth, long nodes) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.principalVariation = principalVariation;
+        this.depth = depth;
+        this.nodes = nodes;
+    }
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    //The array itself, not a copy, so it must not be changed
+    public int[] getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    //The depth of the last iteration that finished, the number of empty cells if the move was solved
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public boolean isPass() {
+        return bestMove == PASS;
+    }
+
+    //The principal variation as square names separated by spaces, -- for a pass, the way SelfPlay writes games.
+
+    public String principalVariationString() {
+        StringBuilder line = new StringBuilder();
+        for (int move : principalVariation) {
+            if (line.length() > 0) line.append(' ');
+            line.append(move == PASS ? "--" : State.squareName(move));
+        }
+        return line.toString();
+    }
+
+    public String toString() {
+        if (isPass()) return "pass";
+        return State.squareName(bestMove) + " score " + score + " depth " + depth + " nodes " + nodes
+                + " pv " + principalVariationString();
+    }
+}
@@ -0,0 +1,142 @@
+/*What one findBestMove call did to choose its move. The counters include the helper threads and the endgame solver
+where they took part, except the per depth ones, which only count the main search thread.*/
+
+public class SearchStatistics {
+
+    //Where the move came from. PONDER is a move found by the search that ran on the opponent's time
+    public enum Source {
+        BOOK, SOLVER, SEARCH, PONDER
+    }
+
+    private final Source source;
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long leafEvaluations;
+    private final long cutoffs;
+    private final long firstMoveCutoffs;
+    private final long tableProbes;
+    private final long tableHits;
+    private final long probCuts;
+    private final long nanos;
+    //The nodes and the time of every iteration, indexed by its depth. 0 for the depths not searched
+    private final long[] iterationNodes;
+    private final long[] iterationNanos;
+
+    SearchStatistics(Source source, int bestMove, int score, int depth, long nodes, long leafEvaluations,
+                     long cutoffs, long firstMoveCutoffs, long tableProbes, long tableHits, long probCuts, long nanos,
+                     long[] iterationNodes, long[] iterationNanos) {
+        this.source = source;
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.leafEvaluations = leafEvaluations;
+        this.cutoffs = cutoffs;
+        this.firstMoveCutoffs = firstMoveCutoffs;
+        this.tableProbes = tableProbes;
+        this.tableHits = tableHits;
+        this.probCuts = probCuts;
+        this.nanos = nanos;
+        this.iterationNodes = iterationNodes;
+        this.iterationNanos = iterationNanos;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    //The depth of the last iteration that finished, the number of empty cells if the move was solved
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getLeafEvaluations() {
+        return leafEvaluations;
+    }
+
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    public long getTableProbes() {
+        return tableProbes;
+    }
+
+    public long getTableHits() {
+        return tableHits;
+    }
+
+    //The nodes cut off by ProbCut, 0 without it
+    public long getProbCuts() {
+        return probCuts;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    //The nodes of the iteration to the given depth, 0 if there was none
+    public long getIterationNodes(int depth) {
+        return depth < iterationNodes.length ? iterationNodes[depth] : 0;
+    }
+
+    //The time in nanoseconds of the iteration to the given depth, 0 if there was none
+    public long getIterationNanos(int depth) {
+        return depth < iterationNanos.length ? iterationNanos[depth] : 0;
+    }
+
+    //The share of the cutoffs that happened on the first move searched
+    public double getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    //The share of the table probes that found an entry
+    public double getTableHitRate() {
+        return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+    }
+
+    /*The branching factor a tree of the same depth would need to have as many nodes as the last iteration,
+    nodes^(1/depth). The smaller it is, the more the search prunes.*/
+    public double getEffectiveBranchingFactor() {
+        long lastNodes = getIterationNodes(depth);
+        if (source != Source.SEARCH || depth == 0 || lastNodes == 0) return 0;
+        return Math.pow(lastNodes, 1.0 / depth);
+    }
+
+    public long getNodesPerSecond() {
+        return nanos == 0 ? 0 : (long) (nodes * 1e9 / nanos);
+    }
+
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(source).append(" move ").append(bestMove < 0 ? "none" : State.squareName(bestMove))
+                .append(" score ").append(score).append(" depth ").append(depth)
+                .append(String.format(" | %d nodes, %d leaves, %.1f ms, %d nodes/s", nodes, leafEvaluations, nanos / 1e6, getNodesPerSecond()))
+                .append(String.format(" | cutoffs %d, first move %.1f%%, table hits %.1f%%, branching factor %.2f",
+                        cutoffs, 100 * getFirstMoveCutoffRate(), 100 * getTableHitRate(), getEffectiveBranchingFactor()));
+        if (probCuts > 0) text.append(", ProbCut cuts ").append(probCuts);
+        for (int d = 1; d < iterationNodes.length; d++) {
+            if (iterationNodes[d] == 0) continue;
+            text.append(String.format(" | d%d %d nodes %.1f ms", d, iterationNodes[d], iterationNanos[d] / 1e6));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*Plays games between two cpu players, A and B, without a human and without printing the boards.
+The games are shared between a pool of threads, every thread with its own two Gaming objects.
+Every game starts with a few random moves, so that the games differ. The games are played in pairs
+with the same random opening, A playing X in the first one and O in the second, so that neither player
+gets the better openings by luck. Every game is written to the output file as soon as it ends,
+in a PGN like format: a few tags, then the moves with the score the player gave each one in braces.
+
+Usage: java SelfPlay <output file> [name=value ...]
+games=100      the number of games
+threads=1      the number of games played at the same time
+depthA=6       the depth player A searches to, depthB=6 the same for B
+timeA=0        the milliseconds A may use for a move, 0 for no limit, timeB=0 the same for B
+weightsA=      a PatternTrainer weights file player A evaluates with instead of the Heuristic, weightsB= the same for B
+probCutA=      a ProbCutCalibrator file player A prunes with, probCutB= the same for B
+random=8       the number of random moves every game starts with
+seed=1         the seed of the random openings, the same seed gives the same openings*/
+
+public class SelfPlay {
+
+    //How one of the two players searches
+    static class Player {
+        final String name;
+        int depth = 6;
+        long time;
+        Evaluator evaluator = new Heuristic();
+        String weights = "";
+        ProbCut probCut;
+        String probCutFile = "";
+
+        Player(String name) {
+            this.name = name;
+        }
+
+        Gaming create(char tileColor) {
+            Gaming gaming = new Gaming(depth, tileColor, new TranspositionTable(TABLE_BITS));
+            gaming.setTimeBudget(time);
+            gaming.setEvaluator(evaluator);
+            gaming.setProbCut(probCut);
+            return gaming;
+        }
+
+        public String toString() {
+            return name + " (depth " + depth + (time > 0 ? ", " + time + " ms" : "")
+                    + (weights.isEmpty() ? "" : ", " + weights) + (probCutFile.isEmpty() ? "" : ", " + probCutFile) + ")";
+        }
+    }
+
+    //Every Gaming object of a self play game gets a table of 2^TABLE_BITS entries, smaller than the default
+    //since there are two of them on every thread
+    static final int TABLE_BITS = 18;
+
+    private final Player a = new Player("A");
+    private final Player b = new Player("B");
+    private int games = 100;
+    private int threads = 1;
+    private int randomPlies = 8;
+    private long seed = 1;
+
+    //The results so far, from A's side
+    private final AtomicInteger aWins = new AtomicInteger();
+    private final AtomicInteger bWins = new AtomicInteger();
+    private final AtomicInteger draws = new AtomicInteger();
+    private final AtomicInteger discDifference = new AtomicInteger();
+    //The nodes searched and the nanoseconds spent by each player, over all games
+    private long aNodes, aTime, bNodes, bTime;
+
+    //Reads the name=value settings of the command line.
+
+    void configure(String[] settings) throws IOException {
+        for (String setting : settings) {
+            int split = setting.indexOf('=');
+            if (split < 0) throw new IllegalArgumentException("Settings are written as name=value, not " + setting);
+            String name = setting.substring(0, split);
+            String value = setting.substring(split + 1);
+            switch (name) {
+                case "games": games = Integer.parseInt(value); break;
+                case "threads": threads = Integer.parseInt(value); break;
+                case "random": randomPlies = Integer.parseInt(value); break;
+                case "seed": seed = Long.parseLong(value); break;
+                case "depthA": a.depth = Integer.parseInt(value); break;
+                case "depthB": b.depth = Integer.parseInt(value); break;
+                case "timeA": a.time = Long.parseLong(value); break;
+                case "timeB": b.time = Long.parseLong(value); break;
+                case "weightsA":
+                    a.evaluator = new PatternEvaluator(Paths.get(value));
+                    a.weights = value;
+                    break;
+                case "weightsB":
+                    b.evaluator = new PatternEvaluator(Paths.get(value));
+                    b.weights = value;
+                    break;
+                case "probCutA":
+                    a.probCut = new ProbCut(Paths.get(value));
+                    a.probCutFile = value;
+                    break;
+                case "probCutB":
+                    b.probCut = new ProbCut(Paths.get(value));
+                    b.probCutFile = value;
+                    break;
+                default: throw new IllegalArgumentException("Unknown setting " + name);
+            }
+        }
+    }
+
+    //Plays all the games and writes them to out. out is shared by the threads, so it is only written to while holding it.
+
+    public void run(Writer out) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                Gaming[] aPlayers = {a.create('X'), a.create('O')};
+                Gaming[] bPlayers = {b.create('X'), b.create('O')};
+                for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+                    boolean aIsX = game % 2 == 0;
+                    Gaming xPlayer = aIsX ? aPlayers[0] : bPlayers[0];
+                    Gaming oPlayer = aIsX ? bPlayers[1] : aPlayers[1];
+                    String record = play(game, aIsX, xPlayer, oPlayer);
+                    synchronized (out) {
+                        out.write(record);
+                        out.flush();
+                    }
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A self play game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //Plays one game and returns its record.
+
+    private String play(int game, boolean aIsX, Gaming xPlayer, Gaming oPlayer) {
+        //both games of a pair get the same random opening
+        Random random = new Random(seed * 1000003 + game / 2);
+        StringBuilder moves = new StringBuilder();
+        long[] nodes = new long[2];
+        long[] time = new long[2];
+        State state = new State();
+        char tileColor = 'X';
+        int ply = 0;
+        while (true) {
+            char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+            state.moveGenerator(state, tileColor);
+            if (state.validMoves == 0) {
+                //if the opponent cannot move either the game is over, else this is a pass
+                if (Bitboard.moves(state.getTiles(opponentTileColor), state.getTiles(tileColor)) == 0) break;
+                tileColor = opponentTileColor;
+                moves.append("-- ");
+                continue;
+            }
+            int move;
+            if (ply < randomPlies) {
+                long choices = state.validMoves;
+                for (int skip = random.nextInt(Long.bitCount(choices)); skip > 0; skip--) {
+                    choices &= choices - 1;
+                }
+                move = Long.numberOfTrailingZeros(choices);
+                state.makeMove(move, tileColor);
+                moves.append(State.squareName(move).toLowerCase()).append(' ');
+            } else {
+                Gaming gaming = (tileColor == 'X') ? xPlayer : oPlayer;
+                int side = (tileColor == 'X') == aIsX ? 0 : 1;
+                long start = System.nanoTime();
+                SearchResult result = gaming.findBestMove(state);
+                time[side] += System.nanoTime() - start;
+                nodes[side] += result.getNodes();
+                move = result.getBestMove();
+                state.makeMove(move, tileColor);
+                moves.append(State.squareName(move).toLowerCase()).append(" {").append(result.getScore()).append("} ");
+            }
+            ply++;
+            tileColor = opponentTileColor;
+        }
+
+        int xCount = state.countTiles('X');
+        int oCount = state.countTiles('O');
+        int difference = EndgameSolver.finalDifference(state.xTiles, state.oTiles);
+        int aDifference = aIsX ? difference : -difference;
+        if (aDifference > 0) aWins.incrementAndGet();
+        else if (aDifference < 0) bWins.incrementAndGet();
+        else draws.incrementAndGet();
+        discDifference.addAndGet(aDifference);
+        synchronized (this) {
+            aNodes += nodes[0];
+            aTime += time[0];
+            bNodes += nodes[1];
+            bTime += time[1];
+        }
+
+        StringBuilder record = new StringBuilder();
+        record.append("[Game \"").append(game + 1).append("\"]\n");
+        record.append("[X \"").append(aIsX ? a : b).append("\"]\n");
+        record.append("[O \"").append(aIsX ? b : a).append("\"]\n");
+        record.append("[Result \"").append(xCount).append('-').append(oCount).append("\"]\n");
+        record.append("[NodesPerSecondA \"").append(perSecond(nodes[0], time[0])).append("\"]\n");
+        record.append("[NodesPerSecondB \"").append(perSecond(nodes[1], time[1])).append("\"]\n");
+        record.append(moves.toString().trim()).append("\n\n");
+        return record.toString();
+    }
+
+    private static long perSecond(long nodes, long nanos) {
+        return nanos == 0 ? 0 : (long) (nodes * 1e9 / nanos);
+    }
+
+    //Returns the results of all the games played so far, from A's side.
+
+    public synchronized String summary() {
+        int played = aWins.get() + bWins.get() + draws.get();
+        return a + " against " + b + ": " + played + " games, A won " + aWins.get() + ", B won " + bWins.get()
+                + ", " + draws.get() + " draws, average disc difference for A "
+                + String.format("%.2f", played == 0 ? 0 : (double) discDifference.get() / played)
+                + "\nnodes per second A " + perSecond(aNodes, aTime) + ", B " + perSecond(bNodes, bTime);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("Usage: java SelfPlay <output file> [games=100] [threads=1] [depthA=6] [depthB=6] "
+                    + "[timeA=0] [timeB=0] [weightsA=file] [weightsB=file] [probCutA=file] [probCutB=file] [random=8] [seed=1]");
+            return;
+        }
+        SelfPlay selfPlay = new SelfPlay();
+        String[] settings = new String[args.length - 1];
+        System.arraycopy(args, 1, settings, 0, settings.length);
+        selfPlay.configure(settings);
+        Path file = Paths.get(args[0]);
+        long start = System.nanoTime();
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            selfPlay.run(out);
+        }
+        System.out.println(selfPlay.summary());
+        System.out.printf("%.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+}
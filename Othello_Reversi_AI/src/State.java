@@ -1,5 +1,4 @@
 import java.util.ArrayList;
-import java.util.List;
 import java.util.Scanner;
 
 /*It is used by MiniMax algorithm and represents a node in the tree the Minimax is searching.
@@ -12,45 +11,114 @@ we can get a cell's "place" in the array by doing some simple math.
 i*8 + j-1 gives us the number representing the cell's "location" in the array.
 This method is used throughout the code but mostly where we want to search for tiles.*/
 
+/*The board itself is stored as two bitboards, one long for the X tiles and one for the O tiles.
+Bit i*8 + j of a bitboard is set when the cell in row i and column j holds a tile of that color,
+so bit 0 is A1 and bit 63 is H8. Copying a State only copies these two longs.*/
+
 public class State {
 
     //the dimension of the table. In our case the board is 8x8 so its dimension is 8.
-    static public int dimension = 8;
-    //A char table storing the tiles.
-    public char[][] tiles;
+    static public final int dimension = 8;
+    //Bitboard holding the X tiles.
+    public long xTiles;
+    //Bitboard holding the O tiles.
+    public long oTiles;
     //Holds the score of the State
     public int score;
-    //An ArrayList holding the valid moves of a player
-    List<Integer> validMoves = new ArrayList<Integer>();
-    //An ArrayList holding the tiles that are going to be flipped after a player made a move.
-    static List<Integer> tilesToFlip = new ArrayList<Integer>();
+    //A mask holding the valid moves of a player, one bit for every cell he can play on
+    long validMoves;
     //Holds how many tiles are currently on the board/State.
-    static int totalCounter;
+    //It belongs to the game this State is part of, so every game keeps its own count.
+    int totalCounter;
     //Counter to indicate when the game is over. It increases by 1 when a player has no valid moves.
     //When both players have no moves left, the game is over.
-    static int endCounter = 0;
+    int endCounter = 0;
 
-    //Constructor with a char array as an input. It copies its data to the new State object created.
+    //Constructor with a char array as an input. It converts the array to the two bitboards of the new State.
 
     public State(char[][] tiles) {
-        this.tiles = new char[dimension][dimension];
         for (int i = 0; i < dimension; i++) {
             for (int j = 0; j < dimension; j++) {
-                this.tiles[i][j] = tiles[i][j];
+                setTile(i, j, tiles[i][j]);
+            }
+        }
+    }
+
+    //Constructor with the two bitboards as an input.
+
+    public State(long xTiles, long oTiles) {
+        this.xTiles = xTiles;
+        this.oTiles = oTiles;
+    }
+
+    //Copy constructor. The board and the game counters are copied, the valid moves are not.
+
+    public State(State state) {
+        this(state.xTiles, state.oTiles);
+        this.totalCounter = state.totalCounter;
+        this.endCounter = state.endCounter;
+    }
+
+    /*Constructor with a board string as an input, the format toString returns.
+    It holds the 64 cells row by row, starting from A1: X or O for a tile and - or . for an empty cell.*/
+
+    public State(String board) {
+        if (board.length() != dimension * dimension) {
+            throw new IllegalArgumentException("A board string has 64 cells, not " + board.length());
+        }
+        for (int i = 0; i < dimension * dimension; i++) {
+            char cell = Character.toUpperCase(board.charAt(i));
+            if (cell == 'X' || cell == 'O') {
+                setTile(i / dimension, i % dimension, cell);
+            } else if (cell != '-' && cell != '.') {
+                throw new IllegalArgumentException("Unknown cell '" + cell + "' in board string");
             }
         }
     }
 
-    /*The default constructor of a State. It assigns 0 to the score, a new array of tiles is created
-    and it's assigned the 4 initial values with which every game starts.*/
+    /*The default constructor of a State. It assigns 0 to the score
+    and the board is assigned the 4 initial values with which every game starts.*/
 
     public State() {
         this.score = 0;
-        this.tiles = new char[dimension][dimension];
-        this.tiles[3][3] = 'O';
-        this.tiles[3][4] = 'X';
-        this.tiles[4][3] = 'X';
-        this.tiles[4][4] = 'O';
+        setTile(3, 3, 'O');
+        setTile(3, 4, 'X');
+        setTile(4, 3, 'X');
+        setTile(4, 4, 'O');
+    }
+
+    //Returns the tile in row i and column j: 'X', 'O' or 0 if the cell is empty.
+
+    public char getTile(int i, int j) {
+        long bit = 1L << (i * dimension + j);
+        if ((xTiles & bit) != 0) return 'X';
+        if ((oTiles & bit) != 0) return 'O';
+        return 0;
+    }
+
+    //Places a tile of the given color in row i and column j. A color of 0 empties the cell.
+
+    public void setTile(int i, int j, char tileColor) {
+        long bit = 1L << (i * dimension + j);
+        xTiles &= ~bit;
+        oTiles &= ~bit;
+        if (tileColor == 'X') {
+            xTiles |= bit;
+        } else if (tileColor == 'O') {
+            oTiles |= bit;
+        }
+    }
+
+    //Returns the bitboard of the given color.
+
+    public long getTiles(char tileColor) {
+        return tileColor == 'X' ? xTiles : oTiles;
+    }
+
+    //Returns the bitboard of the empty cells.
+
+    public long getEmpty() {
+        return ~(xTiles | oTiles);
     }
 
     public int getScore() {
@@ -69,317 +137,97 @@ public class State {
         this.endCounter = endCounter;
     }
 
-    //Generates the valid moves of the opponent. They are stored in the validMoves ArrayList.
-    //It searches for the valid moves vertically, horizontally and diagonally.
+    //Generates the valid moves of the player with the given tile color.
+    //They are stored as a mask in validMoves, one bit for every cell the player can play on.
 
     public void moveGenerator(State currentState, char tileColor) {
-
-        for (int i = 0; i < dimension; i++) {
-            for (int j = 0; j < dimension; j++) {
-                if (tileColor == 'X') {
-                    if (currentState.tiles[i][j] == 'X') {
-                        verticalSearch(i, j, tileColor, 'O', false);
-                        horizontalSearch(i, j, tileColor, 'O', false);
-                        diagonalSearch(i, j, tileColor, 'O', false);
-                    }
-                } else if (tileColor == 'O') {
-                    if (currentState.tiles[i][j] == 'O') {
-                        verticalSearch(i, j, tileColor, 'X', false);
-                        horizontalSearch(i, j, tileColor, 'X', false);
-                        diagonalSearch(i, j, tileColor, 'X', false);
-                    }
-                }
-            }
+        if (tileColor == 'X') {
+            validMoves = Bitboard.moves(currentState.xTiles, currentState.oTiles);
+        } else {
+            validMoves = Bitboard.moves(currentState.oTiles, currentState.xTiles);
         }
     }
 
-    /*This method is responsible for finding the tiles needed to be flipped after a move was made.
-    It searches vertically, horizontally and diagonally.
-    i and j parameters are the coordinates of the tile played.*/
+    /*This method is responsible for flipping the tiles after a move was made.
+    i and j parameters are the coordinates of the tile played.
+    All the tiles to flip, in every direction, are found at once as a mask.*/
 
     public void flipTiles(int i, int j, char tileColor, char opponentTileColor) {
-        verticalSearch(i, j, tileColor, opponentTileColor, true);
-        horizontalSearch(i, j, tileColor, opponentTileColor, true);
-        diagonalSearch(i, j, tileColor, opponentTileColor, true);
-    }
-
-    /*This method is used by moveGenerator and flipTiles methods above.
-    It searches vertically in the array which holds the tiles for 2 different purposes depending on the boolean value.
-    i and j parameters are the coordinates of the tile.
-    The boolean determines if the method will search for valid moves or for tiles to flip.
-    A false value means it searches for valid moves whereas the true value means it searches for tiles that need to be flipped.*/
-
-    public void verticalSearch(int i, int j, char tileColor, char opponentTileColor, boolean toFlip) {
-
-        //the math used here is explained at the start of this file
-
-        //we search upwards
-        //k is used to iterate through the rows
-        int k = i - 1;
-        //if i=0, so k=-1, then we don't have anything above to search
-        if (k >= 0) {
-            //while the above tiles are the opponent's tiles and we are not out of bounds
-            while (tiles[k][j] == opponentTileColor && k > 0) {
-                //check the boolean's value
-                if (toFlip) {
-                    tilesToFlip.add(k * 8 + j + 1);
-                }
-                k--;
-                if (!toFlip) {
-                    if (tiles[k][j] == 0) validMoves.add(k * 8 + j + 1);
-                }
-            }
-            //flip the tiles found above, if any
-            if (tiles[k][j] == tileColor && toFlip) {
-                for (int tile : tilesToFlip) {
-                    if (tile % 8 == 0) {
-                        tiles[tile / 8 - 1][7] = tileColor;
-                    } else {
-                        tiles[tile / 8][tile % 8 - 1] = tileColor;
-                    }
-                }
-            }
-            tilesToFlip.clear();
-
-        }
-
-        //we search downwards now. Same logic as above
-        k = i + 1;
-        if (k <= 7) {
-            while (tiles[k][j] == opponentTileColor && k < 7) {
-                if (toFlip) {
-                    tilesToFlip.add(k * 8 + j + 1);
-                }
-                k++;
-                if (!toFlip)
-                    if (tiles[k][j] == 0) validMoves.add(k * 8 + j + 1);
-            }
-            if (tiles[k][j] == tileColor && toFlip) {
-                for (int tile : tilesToFlip) {
-                    if (tile % 8 == 0) {
-                        tiles[tile / 8 - 1][7] = tileColor;
-                    } else {
-                        tiles[tile / 8][tile % 8 - 1] = tileColor;
-                    }
-                }
-            }
-            tilesToFlip.clear();
+        long flipped = Bitboard.flips(i * dimension + j, getTiles(tileColor), getTiles(opponentTileColor));
+        if (tileColor == 'X') {
+            xTiles |= flipped;
+            oTiles &= ~flipped;
+        } else {
+            oTiles |= flipped;
+            xTiles &= ~flipped;
         }
-
     }
 
-    /*This method is used by moveGenerator and flipTiles methods above.
-    It searches horizontally in the array which holds the tiles for 2 different purposes depending on the boolean value.
-    i and j parameters are the coordinates of the tile.
-    The boolean determines if the method will search for valid moves or for tiles to flip.
-    A false value means it searches for valid moves whereas the true value means it searches for tiles that need to be flipped.*/
-
-    public void horizontalSearch(int i, int j, char tileColor, char opponentTileColor, boolean toFlip) {
-
-        //the math used here is explained at the start of this file
-
-        //we search the column from right to left
-        //k is used to iterate through the columns
-        int k = j - 1;
-        //if j=0, so k=-1, then we don't have anything left to search
-        if (k >= 0) {
-            //while the tiles on the left are the opponent's tiles and we are not out of bounds
-            while (tiles[i][k] == opponentTileColor && k > 0) {
-                if (toFlip) {
-                    tilesToFlip.add(i * 8 + k + 1);
-                }
-                k--;
-                if (!toFlip)
-                    if (tiles[i][k] == 0) validMoves.add(i * 8 + k + 1);
-            }
-            //flip the tiles found above, if any.
-            if (tiles[i][k] == tileColor && toFlip) {
-                for (int tile : tilesToFlip) {
-                    if (tile % 8 == 0) {
-                        tiles[tile / 8 - 1][7] = tileColor;
-                    } else {
-                        tiles[tile / 8][tile % 8 - 1] = tileColor;
-                    }
-                }
-            }
-            tilesToFlip.clear();
-        }
-
+    /*Plays a move in place, without creating a new State.
+    square is the bit number of the cell played, i*8 + j.
+    The mask of the flipped tiles is returned, so that the move can be taken back with undoMove.*/
 
-        //we search the column from right to left
-        //same logic as above
-        k = j + 1;
-        if (k <= 7) {
-            while (tiles[i][k] == opponentTileColor && k < 7) {
-                if (toFlip) {
-                    tilesToFlip.add(i * 8 + k + 1);
-                }
-                k++;
-                if (!toFlip)
-                    if (tiles[i][k] == 0) validMoves.add(i * 8 + k + 1);
-            }
-            if (tiles[i][k] == tileColor && toFlip) {
-                for (int tile : tilesToFlip) {
-                    if (tile % 8 == 0) {
-                        tiles[tile / 8 - 1][7] = tileColor;
-                    } else {
-                        tiles[tile / 8][tile % 8 - 1] = tileColor;
-                    }
-                }
-            }
-            tilesToFlip.clear();
+    public long makeMove(int square, char tileColor) {
+        long flipped;
+        if (tileColor == 'X') {
+            flipped = Bitboard.flips(square, xTiles, oTiles);
+            xTiles |= flipped | (1L << square);
+            oTiles &= ~flipped;
+        } else {
+            flipped = Bitboard.flips(square, oTiles, xTiles);
+            oTiles |= flipped | (1L << square);
+            xTiles &= ~flipped;
         }
-
+        return flipped;
     }
 
-    /*This method is used by moveGenerator and flipTiles methods above.
-    It searches diagonally in the array which holds the tiles for 2 different purposes depending on the boolean value.
-    i and j parameters are the coordinates of the tile.
-    The boolean determines if the method will search for valid moves or for tiles to flip.
-    A false value means it searches for valid moves whereas the true value means it searches for tiles that need to be flipped.*/
-
-    public void diagonalSearch(int i, int j, char tileColor, char opponentTileColor, boolean toFlip) {
-
-        //the math used here is explained at the start of this file
-
-        //we search the array's upper left diagonal
-        //k is used to iterate through the rows
-        //z is used to iterate through the columns
-        int k = i - 1;
-        int z = j - 1;
-        if (k >= 0 && z >= 0) {
-            while (tiles[k][z] == opponentTileColor && k > 0 && z > 0) {
-                if (toFlip) {
-                    tilesToFlip.add(k * 8 + z + 1);
-                }
-                k--;
-                z--;
-                if (!toFlip)
-                    if (tiles[k][z] == 0) validMoves.add(k * 8 + z + 1);
-            }
-            if (tiles[k][z] == tileColor && toFlip) {
-                for (int tile : tilesToFlip) {
-                    if (tile % 8 == 0) {
-                        tiles[tile / 8 - 1][7] = tileColor;
-                    } else {
-                        tiles[tile / 8][tile % 8 - 1] = tileColor;
-                    }
-                }
-            }
-            tilesToFlip.clear();
-        }
-
-
-        //we search the array's upper right diagonal
-        //k is used to iterate through the rows
-        //z is used to iterate through the columns
-
-        k = i - 1;
-        z = j + 1;
-        if (k >= 0 && z <= 7) {
-            while (tiles[k][z] == opponentTileColor && k > 0 && z < 7) {
-                if (toFlip) {
-                    tilesToFlip.add(k * 8 + z + 1);
-                }
-                k--;
-                z++;
-                if (!toFlip)
-                    if (tiles[k][z] == 0) validMoves.add(k * 8 + z + 1);
-            }
-            if (tiles[k][z] == tileColor && toFlip) {
-                for (int tile : tilesToFlip) {
-                    if (tile % 8 == 0) {
-                        tiles[tile / 8 - 1][7] = tileColor;
-                    } else {
-                        tiles[tile / 8][tile % 8 - 1] = tileColor;
-                    }
-                }
-            }
-            tilesToFlip.clear();
-        }
-
-        //we search the array's bottom left diagonal
-        //k is used to iterate through the rows
-        //z is used to iterate through the columns
-        k = i + 1;
-        z = j - 1;
-        if (k <= 7 && z >= 0) {
-            while (tiles[k][z] == opponentTileColor && k < 7 && z > 0) {
-                if (toFlip) {
-                    tilesToFlip.add(k * 8 + z + 1);
-                }
-                k++;
-                z--;
-                if (!toFlip)
-                    if (tiles[k][z] == 0) validMoves.add(k * 8 + z + 1);
-            }
-            if (tiles[k][z] == tileColor && toFlip) {
-                for (int tile : tilesToFlip) {
-                    if (tile % 8 == 0) {
-                        tiles[tile / 8 - 1][7] = tileColor;
-                    } else {
-                        tiles[tile / 8][tile % 8 - 1] = tileColor;
-                    }
-                }
-            }
-            tilesToFlip.clear();
-        }
-
+    //Takes back a move made with makeMove. flipped is the mask makeMove returned
+    //and tileColor the color of the player who made the move.
 
-        //we search the array's bottom right diagonal
-        //k is used to iterate through the rows
-        //z is used to iterate through the columns
-        k = i + 1;
-        z = j + 1;
-        if (k <= 7 && z <= 7) {
-            while (tiles[k][z] == opponentTileColor && k < 7 && z < 7) {
-                if (toFlip) {
-                    tilesToFlip.add(k * 8 + z + 1);
-                }
-                k++;
-                z++;
-                if (!toFlip)
-                    if (tiles[k][z] == 0) validMoves.add(k * 8 + z + 1);
-            }
-            if (tiles[k][z] == tileColor && toFlip) {
-                for (int tile : tilesToFlip) {
-                    if (tile % 8 == 0) {
-                        tiles[tile / 8 - 1][7] = tileColor;
-                    } else {
-                        tiles[tile / 8][tile % 8 - 1] = tileColor;
-                    }
-                }
-            }
-            tilesToFlip.clear();
+    public void undoMove(int square, long flipped, char tileColor) {
+        if (tileColor == 'X') {
+            xTiles &= ~(flipped | (1L << square));
+            oTiles |= flipped;
+        } else {
+            oTiles &= ~(flipped | (1L << square));
+            xTiles |= flipped;
         }
     }
 
-
     /*Method that allows searching specific parts of an array.
     iStart is the row of the array where the search starts,
     and iEnd is the row of the array where the search stops.
     iStep is the step of the iteration.
-    jStart, jEnd and jStep are correspondingly the same but for the columns of the array.*/
+    jStart, jEnd and jStep are correspondingly the same but for the columns of the array.
+    The cells searched are gathered in a mask and the tiles are counted with a single popcount.*/
 
     public int comTotalTiles(State currentState, char tileColor, int iStart, int iEnd, int iStep, int jStart, int jEnd, int jStep) {
-        int comTilesCounter = 0;
+        long mask = 0;
         for (int i = iStart; i < iEnd; i += iStep) {
             for (int j = jStart; j < jEnd; j += jStep) {
-                if (currentState.tiles[i][j] == tileColor) comTilesCounter++;
+                mask |= 1L << (i * dimension + j);
             }
         }
-        return comTilesCounter;
+        return Long.bitCount(currentState.getTiles(tileColor) & mask);
+    }
+
+    //Returns how many tiles of the given color are on the board.
+
+    public int countTiles(char tileColor) {
+        return Long.bitCount(getTiles(tileColor));
     }
 
     //This method is responsble for handling the player's input. It checks user input for possible mistakes
     //and when the input is in an acceptable form, it makes the player's move.
+    //It returns the bit number of the cell played, or -1 if the player had to pass.
 
 
-    public void scanning(State currentState, char tileColor, char opponentColor) {
+    public int scanning(State currentState, char tileColor, char opponentColor) {
         //if there are no valid moves, increment a counter and print something.
-        if (validMoves.isEmpty()) {
+        if (validMoves == 0) {
             endCounter++;
             System.out.println("No valid moves exist for " + tileColor + "!");
+            return -1;
         //else prompt the players to make his move
         } else {
             totalCounter++;
@@ -393,47 +241,41 @@ public class State {
                 position = scanner.nextLine().trim().replace(" ", "").toUpperCase();
             }
             //the player's move
-            int move = ((int) position.charAt(1) - 49) * 8 + ((int) position.charAt(0) - 65) + 1;
-            while (!(validMoves.contains(move) && (position.substring(0, 1).compareToIgnoreCase("A") >= 0 && position.substring(0, 1).compareToIgnoreCase("H") <= 0 &&
+            int move = ((int) position.charAt(1) - 49) * 8 + ((int) position.charAt(0) - 65);
+            //the bounds are checked first, since the move is only a valid bit number inside the board
+            while (!((position.substring(0, 1).compareToIgnoreCase("A") >= 0 && position.substring(0, 1).compareToIgnoreCase("H") <= 0 &&
                     position.substring(1, 2).compareToIgnoreCase("1") >= 0 && position.substring(1, 2).compareToIgnoreCase("8") <= 0 &&
-                    position.length() == 2))) {
+                    position.length() == 2) && (validMoves & (1L << move)) != 0)) {
                 System.out.print("Please enter a valid position: ");
                 position = scanner.nextLine().trim().replace(" ", "").toUpperCase();
                 if (position.length() == 2) {
-                    move = ((int) position.charAt(1) - 49) * 8 + ((int) position.charAt(0) - 65) + 1;
+                    move = ((int) position.charAt(1) - 49) * 8 + ((int) position.charAt(0) - 65);
                 }
             }
             System.out.println("User played on: " + position);
             //add the move to the array
-            currentState.tiles[(int) position.charAt(1) - 49][(int) position.charAt(0) - 65] = tileColor;
+            currentState.setTile((int) position.charAt(1) - 49, (int) position.charAt(0) - 65, tileColor);
             //call flipTiles to change the array
             flipTiles((int) position.charAt(1) - 49, (int) position.charAt(0) - 65, tileColor, opponentColor);
-            validMoves.clear();
+            validMoves = 0;
+            return move;
         }
     }
 
     /*Returns the children of a State in the MiniMax tree.
-    Since we already have an ArrayList containing the valid moves a player can do,
+    Since we already have a mask containing the valid moves a player can do,
     a child is a State with this valid move played.
     So if there are no valid moves, there are no children.*/
 
     public ArrayList<State> getChildren(char tileColor, char opponentTileColor) {
         ArrayList<State> children = new ArrayList<State>();
-        for (int valid : validMoves) {
-            State child = new State(this.tiles);
-            if (valid % 8 == 0) {
-                child.tiles[valid / 8 - 1][7] = tileColor;
-
-            } else {
-                child.tiles[valid / 8][valid % 8 - 1] = tileColor;
-            }
-
-            if (valid % 8 == 0) {
-                child.flipTiles(valid / 8 - 1, 7, tileColor, opponentTileColor);
-            } else {
-                child.flipTiles(valid / 8, valid % 8 - 1, tileColor, opponentTileColor);
-            }
-            //call the moveGenerator so that the child has also an ArrayList
+        //go through the set bits of the mask, lowest first
+        for (long moves = validMoves; moves != 0; moves &= moves - 1) {
+            int valid = Long.numberOfTrailingZeros(moves);
+            State child = new State(this);
+            child.setTile(valid / dimension, valid % dimension, tileColor);
+            child.flipTiles(valid / dimension, valid % dimension, tileColor, opponentTileColor);
+            //call the moveGenerator so that the child has also a mask
             //with its valid moves.
             child.moveGenerator(child, opponentTileColor);
             children.add(child);
@@ -441,6 +283,36 @@ public class State {
         return children;
     }
 
+    //Returns the board as a string of 64 cells, row by row starting from A1, with - for an empty cell.
+
+    @Override
+    public String toString() {
+        StringBuilder board = new StringBuilder(dimension * dimension);
+        for (int i = 0; i < dimension; i++) {
+            for (int j = 0; j < dimension; j++) {
+                char tile = getTile(i, j);
+                board.append(tile == 0 ? '-' : tile);
+            }
+        }
+        return board.toString();
+    }
+
+    //Returns the name of a square, A1 for bit 0 and H8 for bit 63, the letter being the column.
+
+    public static String squareName(int square) {
+        return "" + (char) ('A' + square % dimension) + (square / dimension + 1);
+    }
+
+    //Returns the bit number of a square name like d3, in either case, or -1 if it is not one.
+
+    public static int square(String name) {
+        if (name.length() != 2) return -1;
+        int column = Character.toUpperCase(name.charAt(0)) - 'A';
+        int row = name.charAt(1) - '1';
+        if (column < 0 || column >= dimension || row < 0 || row >= dimension) return -1;
+        return row * dimension + column;
+    }
+
     //Prints the State in a certain way.
     //The player's valid moves are printed as ~,
     //the empty spaces are printed as a middle dot.
@@ -454,12 +326,12 @@ public class State {
         for (int i = 0; i < this.dimension; i++) {
             System.out.print(i + 1 + "\t");
             for (int j = 0; j < this.dimension; j++) {
-                if (validMoves.contains(i * 8 + j + 1)) {
+                if ((validMoves & (1L << (i * dimension + j))) != 0) {
                     System.out.print('~');
-                } else if (currentState.tiles[i][j] == 0) {
+                } else if (currentState.getTile(i, j) == 0) {
                     System.out.print("\u00B7"); //the middle dot character
                 } else {
-                    System.out.print(currentState.tiles[i][j]);
+                    System.out.print(currentState.getTile(i, j));
                 }
                 if (j < this.dimension - 1) {
                     System.out.print("\t");
@@ -0,0 +1,149 @@
+/*The 8 symmetries of the board: the 4 rotations, each with and without a mirror.
+A symmetry is a number from 0 to 7 made of 3 steps, done in this order:
+4 swaps rows and columns (a flip over the A1-H8 diagonal), 1 flips the rows (row i goes to row 7 - i)
+and 2 flips the columns (column j goes to column 7 - j). 0 leaves the board as it is.
+Every step is a handful of shifts and masks on a bitboard, so no cell is moved one at a time.
+Two positions that are symmetric to each other have the same canonical form, so a table keyed by it
+needs to store only one of them.*/
+
+public class Symmetry {
+
+    //INVERSE[s] is the symmetry that undoes s
+    static final int[] INVERSE = new int[8];
+
+    static {
+        for (int symmetry = 0; symmetry < 8; symmetry++) {
+            for (int inverse = 0; inverse < 8; inverse++) {
+                if (square(square(1, symmetry), inverse) == 1 && square(square(8 + 3, symmetry), inverse) == 8 + 3) {
+                    INVERSE[symmetry] = inverse;
+                }
+            }
+        }
+    }
+
+    private Symmetry() {
+    }
+
+    //Row i goes to row 7 - i. The rows are the bytes of the long, so this just reverses them.
+
+    public static long flipRows(long tiles) {
+        return Long.reverseBytes(tiles);
+    }
+
+    //Column j goes to column 7 - j, by reversing the bits of every byte.
+
+    public static long flipColumns(long tiles) {
+        tiles = ((tiles >>> 1) & 0x5555555555555555L) | ((tiles & 0x5555555555555555L) << 1);
+        tiles = ((tiles >>> 2) & 0x3333333333333333L) | ((tiles & 0x3333333333333333L) << 2);
+        return ((tiles >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((tiles & 0x0F0F0F0F0F0F0F0FL) << 4);
+    }
+
+    //Row i column j goes to row j column i. The cells swap in blocks of 4x4, then 2x2, then single cells.
+
+    public static long flipDiagonal(long tiles) {
+        long swap = 0x0F0F0F0F00000000L & (tiles ^ (tiles << 28));
+        tiles ^= swap ^ (swap >>> 28);
+        swap = 0x3333000033330000L & (tiles ^ (tiles << 14));
+        tiles ^= swap ^ (swap >>> 14);
+        swap = 0x5500550055005500L & (tiles ^ (tiles << 7));
+        return tiles ^ swap ^ (swap >>> 7);
+    }
+
+    //Returns the tiles moved by the symmetry.
+
+    public static long transform(long tiles, int symmetry) {
+        if ((symmetry & 4) != 0) tiles = flipDiagonal(tiles);
+        if ((symmetry & 1) != 0) tiles = flipRows(tiles);
+        if ((symmetry & 2) != 0) tiles = flipColumns(tiles);
+        return tiles;
+    }
+
+    //Returns where the symmetry moves the cell with the bit number square.
+
+    public static int square(int square, int symmetry) {
+        int row = square / State.dimension;
+        int column = square % State.dimension;
+        if ((symmetry & 4) != 0) {
+            int swap = row;
+            row = column;
+            column = swap;
+        }
+        if ((symmetry & 1) != 0) row = State.dimension - 1 - row;
+        if ((symmetry & 2) != 0) column = State.dimension - 1 - column;
+        return row * State.dimension + column;
+    }
+
+    /*Returns the symmetry that gives the canonical form of the position: the one of the 8 images
+    with the smallest player bitboard, or the smallest opponent bitboard when those are equal.
+    The images of the player's tiles are built from each other, so all 8 cost one diagonal flip,
+    two row flips and four column flips. The opponent's tiles are only moved when there is a tie.
+    player and opponent can be any two bitboards, as long as they are always given in the same order.*/
+
+    public static int canonical(long player, long opponent) {
+        long rows = flipRows(player);
+        long diagonal = flipDiagonal(player);
+        long diagonalRows = flipRows(diagonal);
+        int best = 0;
+        long bestPlayer = player;
+        long image = rows;
+        if (smaller(image, 1, bestPlayer, best, opponent)) {
+            best = 1;
+            bestPlayer = image;
+        }
+        image = flipColumns(player);
+        if (smaller(image, 2, bestPlayer, best, opponent)) {
+            best = 2;
+            bestPlayer = image;
+        }
+        image = flipColumns(rows);
+        if (smaller(image, 3, bestPlayer, best, opponent)) {
+            best = 3;
+            bestPlayer = image;
+        }
+        image = diagonal;
+        if (smaller(image, 4, bestPlayer, best, opponent)) {
+            best = 4;
+            bestPlayer = image;
+        }
+        image = diagonalRows;
+        if (smaller(image, 5, bestPlayer, best, opponent)) {
+            best = 5;
+            bestPlayer = image;
+        }
+        image = flipColumns(diagonal);
+        if (smaller(image, 6, bestPlayer, best, opponent)) {
+            best = 6;
+            bestPlayer = image;
+        }
+        image = flipColumns(diagonalRows);
+        if (smaller(image, 7, bestPlayer, best, opponent)) {
+            best = 7;
+        }
+        return best;
+    }
+
+    //True if the image of the player's tiles under symmetry comes before the best one found so far.
+
+    private static boolean smaller(long image, int symmetry, long bestImage, int best, long opponent) {
+        return image < bestImage || (image == bestImage && transform(opponent, symmetry) < transform(opponent, best));
+    }
+
+    /*Hashes a position given by its two bitboards, with tileColor to move. It is not a Zobrist hash,
+    since a canonical position cannot be updated move by move anyway, but a mix of the two longs
+    that spreads every bit over the whole hash, so its low bits can index a table.*/
+
+    public static long hash(long xTiles, long oTiles, char tileColor) {
+        long hash = xTiles * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(oTiles * 0xC2B2AE3D27D4EB4FL, 31);
+        if (tileColor == 'O') hash = ~hash;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    //Returns the hash of the canonical form of the position, the same for all its symmetric copies.
+
+    public static long canonicalHash(long xTiles, long oTiles, char tileColor) {
+        int symmetry = canonical(xTiles, oTiles);
+        return hash(transform(xTiles, symmetry), transform(oTiles, symmetry), tileColor);
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+/*A fixed size table remembering the results of positions already searched, keyed by their Zobrist hash.
+Every entry is two longs in two primitive arrays, so the table is allocated once and never creates garbage.
+The first long is the key and the second one holds the score, best move, depth and bound, packed as below:
+bits 0-31 the score, bits 32-39 the best move (255 if there is none), bits 40-47 the depth searched,
+bits 48-49 the bound and bits 50-57 the search the entry was stored in.
+The key is stored XORed with the data, so an entry half written by another thread just looks like a miss.*/
+
+public class TranspositionTable {
+
+    //The score is the exact value of the position
+    public static final int EXACT = 1;
+    //The score is a lower bound, the search failed high
+    public static final int LOWER = 2;
+    //The score is an upper bound, the search failed low
+    public static final int UPPER = 3;
+
+    //Decides if a new entry may overwrite the entry already stored in its slot
+    public enum ReplacementPolicy {
+        //The newest entry always wins
+        ALWAYS,
+        //An entry is only replaced by one searched at least as deep, or if it is left over from an older search
+        DEPTH_PREFERRED
+    }
+
+    private static final int NO_MOVE = 0xFF;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private final ReplacementPolicy policy;
+    //Counts the searches, so that entries of older searches can be told apart
+    private int age;
+
+    //Creates a table with 2^sizeBits entries.
+
+    public TranspositionTable(int sizeBits, ReplacementPolicy policy) {
+        if (sizeBits < 1 || sizeBits > 30) {
+            throw new IllegalArgumentException("sizeBits must be between 1 and 30");
+        }
+        this.keys = new long[1 << sizeBits];
+        this.data = new long[1 << sizeBits];
+        this.mask = (1 << sizeBits) - 1;
+        this.policy = policy;
+    }
+
+    public TranspositionTable(int sizeBits) {
+        this(sizeBits, ReplacementPolicy.DEPTH_PREFERRED);
+    }
+
+    //Called at the start of every search. Entries of earlier searches are kept, but become easier to replace.
+
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    //Empties the table.
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    //Returns the packed entry stored for hash, or 0 if there is none. Use the static methods below to unpack it.
+
+    public long probe(long hash) {
+        int index = (int) hash & mask;
+        long entry = data[index];
+        if ((keys[index] ^ entry) != hash) return 0;
+        return entry;
+    }
+
+    //Stores the result of a search. move is -1 if there is no best move.
+
+    public void store(long hash, int depth, int bound, int score, int move) {
+        int index = (int) hash & mask;
+        long old = data[index];
+        if (policy == ReplacementPolicy.DEPTH_PREFERRED && old != 0 && (keys[index] ^ old) != hash
+                && age(old) == age && depth(old) > depth) {
+            return;
+        }
+        long entry = (score & 0xFFFFFFFFL) | ((long) (move < 0 ? NO_MOVE : move) << 32)
+                | ((long) depth << 40) | ((long) bound << 48) | ((long) age << 50);
+        keys[index] = hash ^ entry;
+        data[index] = entry;
+    }
+
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    //Returns the best move of the entry, or -1 if there is none.
+
+    public static int move(long entry) {
+        int move = (int) (entry >>> 32) & 0xFF;
+        return move == NO_MOVE ? -1 : move;
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 40) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 48) & 0x3;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> 50) & 0xFF;
+    }
+}
@@ -0,0 +1,73 @@
+/*Zobrist hashing of the board. Every cell has one random key for an X tile and one for an O tile,
+and the hash of a State is the XOR of the keys of all its tiles, plus one more key when O is to move.
+Since XOR undoes itself, the hash of a child is found from the hash of its parent by XORing only
+the keys of the cells that changed, so the search never has to hash a whole board again.
+The keys come from a fixed seed, so the same position always gets the same hash on every run.*/
+
+public class Zobrist {
+
+    //The keys of an X and an O tile for every cell
+    static final long[] X_KEYS = new long[64];
+    static final long[] O_KEYS = new long[64];
+    //X_KEYS[i] ^ O_KEYS[i], the change of the hash when the tile on cell i is flipped
+    static final long[] FLIP_KEYS = new long[64];
+    //The key XORed in when O is the player to move
+    static final long O_TO_MOVE;
+
+    static {
+        //SplitMix64, so that the keys do not depend on the java.util.Random implementation
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < 64; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            X_KEYS[i] = mix(seed);
+            seed += 0x9E3779B97F4A7C15L;
+            O_KEYS[i] = mix(seed);
+            FLIP_KEYS[i] = X_KEYS[i] ^ O_KEYS[i];
+        }
+        seed += 0x9E3779B97F4A7C15L;
+        O_TO_MOVE = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    //Hashes a whole board, with tileColor being the player to move.
+
+    public static long hash(long xTiles, long oTiles, char tileColor) {
+        long hash = (tileColor == 'O') ? O_TO_MOVE : 0;
+        for (long tiles = xTiles; tiles != 0; tiles &= tiles - 1) {
+            hash ^= X_KEYS[Long.numberOfTrailingZeros(tiles)];
+        }
+        for (long tiles = oTiles; tiles != 0; tiles &= tiles - 1) {
+            hash ^= O_KEYS[Long.numberOfTrailingZeros(tiles)];
+        }
+        return hash;
+    }
+
+    public static long hash(State state, char tileColor) {
+        return hash(state.xTiles, state.oTiles, tileColor);
+    }
+
+    /*Returns the hash of the State after tileColor played on square and flipped the tiles in flipped.
+    The player to move changes too. Calling it again with the same arguments gives back the old hash.*/
+
+    public static long afterMove(long hash, int square, long flipped, char tileColor) {
+        hash ^= ((tileColor == 'X') ? X_KEYS[square] : O_KEYS[square]) ^ O_TO_MOVE;
+        for (; flipped != 0; flipped &= flipped - 1) {
+            hash ^= FLIP_KEYS[Long.numberOfTrailingZeros(flipped)];
+        }
+        return hash;
+    }
+
+    //Returns the hash of the State after the player to move passed.
+
+    public static long afterPass(long hash) {
+        return hash ^ O_TO_MOVE;
+    }
+}
@@ -0,0 +1,109 @@
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class EngineServerTest {
+
+    //Runs a session with the given commands and waits until its output has a line starting with answer.
+
+    private static String session(EngineServer server, String commands, String answer) throws IOException, InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        server.serve(new ByteArrayInputStream(commands.getBytes(StandardCharsets.UTF_8)), out);
+        waitForLines(out, answer, 1, 10_000);
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+
+    //Waits up to millis for out to have count lines starting with answer, and returns if it got them.
+
+    private static boolean waitForLines(ByteArrayOutputStream out, String answer, int count, long millis)
+            throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        while (System.nanoTime() < deadline) {
+            String output = "\n" + out.toString(StandardCharsets.UTF_8.name());
+            if (output.split("\n" + answer, -1).length > count) return true;
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    //The sessions come one after another, so their searches run on the same pool thread with the same solver and ordering.
+
+    @Test
+    void everySessionGetsItsBestmove() throws IOException, InterruptedException {
+        EngineServer server = new EngineServer(1, 12, new Heuristic(), null);
+        try {
+            for (String moves : new String[]{"", " moves f5", " moves f5 d6 c3 d3 c4"}) {
+                String output = session(server, "position startpos" + moves + "\ngo depth 3\n", "bestmove");
+                assertTrue(output.contains("bestmove "), output);
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    //A search that throws must still answer, with an error line instead of a bestmove.
+
+    @Test
+    void aFailingSearchAnswersAnError() throws IOException, InterruptedException {
+        Evaluator broken = (state, tileColor, opponentTileColor) -> {
+            throw new IllegalStateException("broken evaluator");
+        };
+        EngineServer server = new EngineServer(1, 12, broken, null);
+        try {
+            String output = session(server, "position startpos\ngo depth 3\n", "error");
+            assertTrue(output.contains("error search failed") && output.contains("broken evaluator"), output);
+        } finally {
+            server.close();
+        }
+    }
+
+    /*A stop sent right after a go, while the pool thread may still be on its way into the search,
+    must end a search that would otherwise never finish and get its bestmove at once.*/
+
+    @Test
+    void stopRightAfterGoIsNotLost() throws IOException, InterruptedException {
+        EngineServer server = new EngineServer(1, 16, new Heuristic(), null);
+        PipedOutputStream commands = new PipedOutputStream();
+        PipedInputStream in = new PipedInputStream(commands);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Thread session = new Thread(() -> {
+            try {
+                server.serve(in, out);
+            } catch (IOException e) {
+                //the test ended the session
+            }
+        });
+        session.setDaemon(true);
+        session.start();
+        try {
+            for (int round = 1; round <= 20; round++) {
+                commands.write("go depth 40\nstop\n".getBytes(StandardCharsets.UTF_8));
+                commands.flush();
+                assertTrue(waitForLines(out, "bestmove ", round, 5_000), "no bestmove after stop in round " + round);
+            }
+        } finally {
+            commands.close();
+            server.close();
+        }
+    }
+
+    /*The case the test above can only hit by chance: the pool thread has taken the search but not entered findBestMove
+    when stop comes. The stop must still be there when findBestMove starts, else it searches to depth 40.*/
+
+    @Test
+    void stopBeforeTheSearchStartsIsKept() {
+        Gaming gaming = new Gaming(40, 'X', new TranspositionTable(16));
+        gaming.clearStop();
+        gaming.stop();
+        SearchResult result = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> gaming.findBestMove(new State()));
+        assertTrue(result.getDepth() < 40, "searched to depth " + result.getDepth());
+    }
+}
@@ -0,0 +1,93 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GameRecordWriterTest {
+
+    @TempDir
+    Path folder;
+
+    private static byte[] moves(String... squares) {
+        byte[] moves = new byte[squares.length];
+        for (int i = 0; i < squares.length; i++) {
+            moves[i] = (byte) State.square(squares[i]);
+        }
+        return moves;
+    }
+
+    /*A crash in the middle of a write leaves part of a game after the last one counted.
+    Opening the file again must cut it off, so that the next game is found where the index says it is,
+    and so that an index built again from the records file finds the same games.*/
+
+    @Test
+    void halfWrittenGameIsCutOff() throws IOException {
+        Path file = folder.resolve("games.rec");
+        byte[] first = moves("f5", "d6", "c3");
+        byte[] second = moves("f5", "f6", "e6", "f4");
+        byte[] third = moves("d3", "c5");
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            writer.write(first, first.length, GameRecordFile.X_ENGINE);
+            writer.write(second, second.length, 0);
+        }
+        long size = Files.size(file);
+        //the header and a few moves of a game that never got counted
+        Files.write(file, new byte[]{20, 30, 30, 3, 37, 43}, StandardOpenOption.APPEND);
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            assertEquals(size, Files.size(file));
+            writer.write(third, third.length, GameRecordFile.O_ENGINE);
+        }
+        assertEquals(size + GameRecordFile.GAME_HEADER_BYTES + third.length, Files.size(file));
+        GameRecordFile records = new GameRecordFile(file);
+        checkGames(records, first, second, third);
+        assertEquals(GameRecordFile.O_ENGINE, records.flags(2));
+        Files.delete(GameRecordFile.indexFile(file));
+        checkGames(new GameRecordFile(file), first, second, third);
+    }
+
+    /*A crash between the two header writes of write leaves an index with every game in it,
+    but whose header still counts one game less than the records file. Both the reader and the writer must take it.*/
+
+    @Test
+    void indexCountingAGameLessIsRebuilt() throws IOException {
+        Path file = folder.resolve("games.rec");
+        byte[] first = moves("f5", "d6", "c3");
+        byte[] second = moves("f5", "f6", "e6", "f4");
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            writer.write(first, first.length, 0);
+            writer.write(second, second.length, 0);
+        }
+        try (FileChannel index = FileChannel.open(GameRecordFile.indexFile(file), StandardOpenOption.WRITE)) {
+            ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 1);
+            index.write(count, 8);
+        }
+        checkGames(new GameRecordFile(file), first, second);
+
+        try (FileChannel index = FileChannel.open(GameRecordFile.indexFile(file), StandardOpenOption.WRITE)) {
+            ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 1);
+            index.write(count, 8);
+        }
+        byte[] third = moves("d3", "c5");
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            writer.write(third, third.length, 0);
+        }
+        checkGames(new GameRecordFile(file), first, second, third);
+    }
+
+    private static void checkGames(GameRecordFile records, byte[]... games) {
+        assertEquals(games.length, records.size());
+        for (int game = 0; game < games.length; game++) {
+            assertEquals(games[game].length, records.moveCount(game));
+            for (int ply = 0; ply < games[game].length; ply++) {
+                assertEquals(games[game][ply], records.move(game, ply));
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/*The search of a position and the searches of its 7 mirrored copies must find the same score,
+with a table of their own and with one table shared by all 8, where the copies hit each other's entries.*/
+
+class GamingSymmetryTest {
+
+    static final int DEPTH = 5;
+
+    private static Gaming player(char tileColor, TranspositionTable table) {
+        Gaming gaming = new Gaming(DEPTH, tileColor, table);
+        gaming.setEndgameEmpties(0);
+        return gaming;
+    }
+
+    @Test
+    void mirroredPositionsGetTheSameScore() {
+        for (char tileColor : new char[]{'X', 'O'}) {
+            for (State position : SymmetricBoards.randomGames(12, tileColor)) {
+                int expected = player(tileColor, new TranspositionTable(16)).findBestMove(position).getScore();
+                Gaming shared = player(tileColor, new TranspositionTable(16));
+                for (int symmetry = 0; symmetry < 8; symmetry++) {
+                    State image = SymmetricBoards.image(position, symmetry);
+                    assertEquals(expected, player(tileColor, new TranspositionTable(16)).findBestMove(image).getScore(),
+                            "symmetry " + symmetry);
+                    assertEquals(expected, shared.findBestMove(image).getScore(), "symmetry " + symmetry + ", shared table");
+                }
+            }
+        }
+    }
+
+    //An evaluator that scores a1 and h1 differently is not symmetric, so its copies must not share table entries.
+
+    @Test
+    void asymmetricEvaluatorKeepsTheCopiesApart() {
+        Evaluator lopsided = (state, tileColor, opponentTileColor) -> Long.bitCount(state.getTiles(tileColor) & 0x0F0F0F0F0F0F0F0FL);
+        for (State position : SymmetricBoards.randomGames(12, 'X')) {
+            for (int symmetry = 0; symmetry < 8; symmetry++) {
+                State image = SymmetricBoards.image(position, symmetry);
+                Gaming alone = player('X', new TranspositionTable(16));
+                alone.setEvaluator(lopsided);
+                Gaming shared = player('X', new TranspositionTable(16));
+                shared.setEvaluator(lopsided);
+                //the other copies searched first leave their entries in the shared table
+                for (int other = 0; other < 8; other++) {
+                    if (other != symmetry) shared.findBestMove(SymmetricBoards.image(position, other));
+                }
+                assertEquals(alone.findBestMove(image).getScore(), shared.findBestMove(image).getScore(), "symmetry " + symmetry);
+            }
+        }
+    }
+}
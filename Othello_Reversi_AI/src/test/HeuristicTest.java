@@ -0,0 +1,13 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HeuristicTest {
+
+    @Test
+    void symmetricStatesGetTheSameScore() {
+        Heuristic heuristic = new Heuristic();
+        assertTrue(heuristic.isSymmetric());
+        SymmetricBoards.assertSameScores(heuristic, SymmetricBoards.randomBoards(2000));
+    }
+}
@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OpeningBookTest {
+
+    @TempDir
+    Path folder;
+
+    //Won and lost games keep their disc difference and stay apart from the biggest evaluations.
+
+    @Test
+    void scoresSurviveTheBook() {
+        for (int score : new int[]{0, 1, -1, 250, -250, OpeningBook.MAX_EVALUATION, -OpeningBook.MAX_EVALUATION}) {
+            assertEquals(score, OpeningBook.decodeScore(OpeningBook.encodeScore(score)));
+        }
+        for (int difference = 1; difference <= 64; difference++) {
+            assertEquals(Gaming.WIN_SCORE + difference, OpeningBook.decodeScore(OpeningBook.encodeScore(Gaming.WIN_SCORE + difference)));
+            assertEquals(-Gaming.WIN_SCORE - difference, OpeningBook.decodeScore(OpeningBook.encodeScore(-Gaming.WIN_SCORE - difference)));
+        }
+        int biggestEvaluation = OpeningBook.decodeScore(OpeningBook.encodeScore(Gaming.WIN_SCORE / 2 - 1));
+        assertTrue(biggestEvaluation < OpeningBook.decodeScore(OpeningBook.encodeScore(Gaming.WIN_SCORE + 1)));
+        assertTrue(-biggestEvaluation > OpeningBook.decodeScore(OpeningBook.encodeScore(-Gaming.WIN_SCORE - 1)));
+    }
+
+    //One probe gives the move, turned to the copy asked for, the score and the depth, for all 8 copies of a position.
+
+    @Test
+    void probeFindsEverySymmetricCopy() throws IOException {
+        State state = new State();
+        char tileColor = 'X';
+        for (String move : new String[]{"f5", "f6", "e6", "f4", "e3"}) {
+            state.makeMove(State.square(move), tileColor);
+            tileColor = (tileColor == 'X') ? 'O' : 'X';
+        }
+        char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+        long player = state.getTiles(tileColor);
+        long opponent = state.getTiles(opponentTileColor);
+        int best = Long.numberOfTrailingZeros(Bitboard.moves(player, opponent));
+        int symmetry = Symmetry.canonical(player, opponent);
+        Path file = folder.resolve("book.bin");
+        OpeningBook.write(file, new long[]{OpeningBook.key(player, opponent)},
+                new short[]{OpeningBook.encodeScore(Gaming.WIN_SCORE + 6)},
+                new byte[]{(byte) Symmetry.square(best, symmetry)}, new byte[]{12}, 1);
+        OpeningBook book = new OpeningBook(file);
+        for (int k = 0; k < 8; k++) {
+            long entry = book.probe(Symmetry.transform(player, k), Symmetry.transform(opponent, k));
+            assertEquals(Symmetry.square(best, k), OpeningBook.move(entry), "symmetry " + k);
+            assertEquals(Gaming.WIN_SCORE + 6, OpeningBook.score(entry));
+            assertEquals(12, OpeningBook.depth(entry));
+        }
+        assertEquals(0, book.probe(opponent, player));
+        assertEquals(-1, book.lookup(opponent, player));
+    }
+}
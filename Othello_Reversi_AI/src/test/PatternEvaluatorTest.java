@@ -0,0 +1,44 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//The pattern evaluation must give the 8 symmetric copies of a State the same score, whatever the weights.
+
+class PatternEvaluatorTest {
+
+    @TempDir
+    Path folder;
+
+    //An evaluator with random weights, so that no symmetry can come from the weights themselves.
+
+    private PatternEvaluator randomEvaluator() throws IOException {
+        Random random = new Random(SymmetricBoards.SEED);
+        short[] weights = new short[PatternEvaluator.PHASES * PatternEvaluator.WEIGHTS_PER_PHASE];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (short) (random.nextInt(2001) - 1000);
+        }
+        Path file = folder.resolve("patterns.bin");
+        PatternEvaluator.write(file, weights);
+        return new PatternEvaluator(file);
+    }
+
+    @Test
+    void symmetricStatesGetTheSameScore() throws IOException {
+        PatternEvaluator evaluator = randomEvaluator();
+        assertTrue(evaluator.isSymmetric());
+        SymmetricBoards.assertSameScores(evaluator, SymmetricBoards.randomBoards(500));
+    }
+
+    //A disc on a1 and one on h1 are mirror images, and lie on the self symmetric edge, corner and diagonal patterns.
+
+    @Test
+    void mirroredCornersGetTheSameScore() throws IOException {
+        PatternEvaluator evaluator = randomEvaluator();
+        assertEquals(evaluator.evaluate(new State(1L, 0), 'X', 'O'), evaluator.evaluate(new State(1L << 7, 0), 'X', 'O'));
+    }
+}
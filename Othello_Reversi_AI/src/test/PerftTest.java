@@ -0,0 +1,52 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/*The perft counts from the initial position, and the check mode, which compares every node of a perft
+against the slow cell by cell generator and every move taken back against the board before it.*/
+
+class PerftTest {
+
+    @Test
+    void initialCounts() {
+        Perft perft = new Perft();
+        for (int depth = 1; depth <= 8; depth++) {
+            assertEquals(Perft.INITIAL_COUNTS[depth - 1], perft.perft(new State(), 'X', depth), "depth " + depth);
+        }
+    }
+
+    @Test
+    void checkedCountsFromTheInitialPosition() {
+        assertEquals(Perft.INITIAL_COUNTS[5], new Perft(true).perft(new State(), 'X', 6));
+    }
+
+    //Mid-game positions reached by random games, searched with check on. Check throws if a node is wrong,
+    //and the board must be the same after the search, since every move is taken back.
+
+    @Test
+    void checkedCountsInTheMiddleGame() {
+        Random random = new Random(11);
+        for (int plies : new int[]{12, 20, 28, 36, 44}) {
+            State state = new State();
+            char tileColor = 'X';
+            for (int ply = 0; ply < plies; ply++) {
+                char opponentTileColor = (tileColor == 'X') ? 'O' : 'X';
+                long moves = Bitboard.moves(state.getTiles(tileColor), state.getTiles(opponentTileColor));
+                if (moves != 0) {
+                    for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                        moves &= moves - 1;
+                    }
+                    state.makeMove(Long.numberOfTrailingZeros(moves), tileColor);
+                }
+                tileColor = opponentTileColor;
+            }
+            long xTiles = state.xTiles;
+            long oTiles = state.oTiles;
+            long checked = new Perft(true).perft(state, tileColor, 4);
+            assertEquals(new Perft().perft(state, tileColor, 4), checked, "after " + plies + " plies");
+            assertEquals(xTiles, state.xTiles);
+            assertEquals(oTiles, state.oTiles);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+/*The boards the symmetry tests run on, and the check that an evaluator gives the 8 symmetric copies of a board
+the same score. The transposition table and the opening book share one entry between the copies,
+so every evaluator that says it is symmetric, and the search itself, must pass it.*/
+
+final class SymmetricBoards {
+
+    //The seed of every board, so that a failure comes back on every run
+    static final long SEED = 13;
+
+    private SymmetricBoards() {
+    }
+
+    //Random boards, from nearly empty to nearly full, that no game has to be able to reach.
+
+    static State[] randomBoards(int count) {
+        Random random = new Random(SEED);
+        State[] boards = new State[count];
+        for (int n = 0; n < count; n++) {
+            long xTiles = 0;
+            long oTiles = 0;
+            int filled = random.nextInt(64);
+            for (int i = 0; i < filled; i++) {
+                long cell = 1L << random.nextInt(64);
+                if (random.nextBoolean()) xTiles |= cell & ~oTiles;
+                else oTiles |= cell & ~xTiles;
+            }
+            boards[n] = new State(xTiles, oTiles);
+        }
+        return boards;
+    }
+
+    //Positions of random games with tileColor to move, from the opening, where the table keys are canonical, to the middle game.
+
+    static State[] randomGames(int count, char tileColor) {
+        Random random = new Random(SEED);
+        State[] positions = new State[count];
+        for (int n = 0; n < count; n++) {
+            State state = new State();
+            char toMove = 'X';
+            int plies = 2 + random.nextInt(20);
+            for (int ply = 0; ply < plies || toMove != tileColor; ply++) {
+                long moves = Bitboard.moves(state.getTiles(toMove), state.getTiles(toMove == 'X' ? 'O' : 'X'));
+                if (moves != 0) {
+                    int[] squares = new int[Long.bitCount(moves)];
+                    for (int i = 0; moves != 0; moves &= moves - 1) squares[i++] = Long.numberOfTrailingZeros(moves);
+                    state.makeMove(squares[random.nextInt(squares.length)], toMove);
+                }
+                toMove = (toMove == 'X') ? 'O' : 'X';
+            }
+            positions[n] = state;
+        }
+        return positions;
+    }
+
+    static State image(State state, int symmetry) {
+        return new State(Symmetry.transform(state.xTiles, symmetry), Symmetry.transform(state.oTiles, symmetry));
+    }
+
+    //Checks that evaluator gives every board and its 7 copies the same score, for both players.
+
+    static void assertSameScores(Evaluator evaluator, State[] boards) {
+        for (State board : boards) {
+            int xScore = evaluator.evaluate(board, 'X', 'O');
+            int oScore = evaluator.evaluate(board, 'O', 'X');
+            for (int symmetry = 1; symmetry < 8; symmetry++) {
+                State image = image(board, symmetry);
+                assertEquals(xScore, evaluator.evaluate(image, 'X', 'O'), "symmetry " + symmetry + " of " + board);
+                assertEquals(oScore, evaluator.evaluate(image, 'O', 'X'), "symmetry " + symmetry + " of " + board);
+            }
+        }
+    }
+}